@@ -0,0 +1,278 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku;
+
+import java.util.*;
+
+/**
+ * Computes the canonical form of a sudoku puzzle: the minimal
+ * lexicographical ("minlex") representative of its equivalence class.
+ * <p>
+ * Two puzzles are equivalent if one can be turned into the other by a
+ * combination of:
+ * <ul>
+ * <li>A transposition (swapping the rows and the columns)
+ * <li>A permutation of the bands, and of the rows within each band
+ * <li>A permutation of the stacks, and of the columns within each stack
+ * <li>A relabelling of the digits
+ * </ul>
+ * That makes 2 * 6^8 = 3,359,232 geometric transformations, each one
+ * with 9! relabellings. The canonical form is the smallest of the resulting
+ * 81-characters strings, an empty cell being smaller than any digit. For a
+ * given geometric transformation, the best relabelling simply numbers the
+ * digits in their order of first appearance.
+ * <p>
+ * The canonical form is built row by row. For the first row, all the rows
+ * of the puzzle and of its transposition are tried with all the column
+ * permutations, and only the transformations giving the smallest row are
+ * kept. Each following row is then only tried with these transformations,
+ * and so on. Hence most of the transformations are discarded after
+ * a few cells.
+ * <p>
+ * Only vanilla sudokus are supported: the regions of the other variants do
+ * not have the same symmetries.
+ * <p>
+ * Instances are not thread-safe; the static methods can be used from any
+ * thread.
+ */
+public final class Canonicalizer {
+
+    /**
+     * The 1296 column permutations: for each position, the source column.
+     */
+    private static final int[][] PERMS = buildPermutations();
+
+    // Layout of a transformation: the source row of each target row (4 bits
+    // each), the column permutation and whether the puzzle is transposed
+    private static final int PERM_SHIFT = 36;
+    private static final int TRANSPOSE_SHIFT = 47;
+
+    // Transformations still giving the smallest rows so far, and their digit
+    // labels: the label of digit d is in bits 4d to 4d+3; bits 0 to 3 hold the
+    // number of labels used.
+    private long[] transforms = new long[64];
+    private long[] labels = new long[64];
+    private int count;
+    private long[] nextTransforms = new long[64];
+    private long[] nextLabels = new long[64];
+    private int nextCount;
+
+    private final int[] best = new int[9];
+    private final int[] row = new int[9];
+    private long rowLabels;
+
+    private static int[][] buildPermutations() {
+        int[][] perms3 = new int[][] {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+        };
+        int[][] result = new int[6 * 6 * 6 * 6][];
+        int index = 0;
+        for (int[] stacks : perms3) {
+            for (int[] cols0 : perms3) {
+                for (int[] cols1 : perms3) {
+                    for (int[] cols2 : perms3) {
+                        int[][] cols = new int[][] {cols0, cols1, cols2};
+                        int[] perm = new int[9];
+                        for (int stack = 0; stack < 3; stack++) {
+                            for (int col = 0; col < 3; col++)
+                                perm[stack * 3 + col] = stacks[stack] * 3 + cols[stack][col];
+                        }
+                        result[index++] = perm;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the canonical form of a puzzle.
+     * @param puzzle the puzzle, as a string of 81 characters: the digits
+     * <tt>1</tt> to <tt>9</tt> and the letters <tt>A</tt> to <tt>I</tt>
+     * for the givens, as in the rating tools, any other character for the
+     * empty cells
+     * @return the canonical form, as a string of 81 characters, with
+     * <tt>.</tt> for the empty cells
+     * @throws IllegalArgumentException if the puzzle is shorter than
+     * 81 characters
+     */
+    public static String getCanonicalForm(String puzzle) {
+        if (puzzle.length() < 81)
+            throw new IllegalArgumentException("Puzzle must have 81 cells");
+        int[] values = new int[81];
+        for (int i = 0; i < 81; i++) {
+            char ch = puzzle.charAt(i);
+            if (ch >= '1' && ch <= '9')
+                values[i] = ch - '0';
+            if (ch >= 'A' && ch <= 'I')
+                values[i] = ch - 'A'+1;
+        }
+        return toString(new Canonicalizer().canonicalize(values));
+    }
+
+    /**
+     * Get the canonical form of the values of a grid. Potential values are
+     * ignored.
+     * @param grid the grid, that must be a vanilla sudoku
+     * @return the canonical form, as a string of 81 characters, with
+     * <tt>.</tt> for the empty cells
+     * @throws IllegalArgumentException if the grid is not a vanilla sudoku
+     */
+    public static String getCanonicalForm(Grid grid) {
+        if (!grid.getVariant().isVanilla())
+            throw new IllegalArgumentException("Only vanilla sudokus have a canonical form");
+        int[] values = new int[81];
+        for (int i = 0; i < 81; i++)
+            values[i] = grid.getCellValue(i % 9, i / 9);
+        return toString(new Canonicalizer().canonicalize(values));
+    }
+
+    private static String toString(int[] values) {
+        StringBuilder result = new StringBuilder(81);
+        for (int value : values)
+            result.append(value == 0 ? '.' : (char)('0' + value));
+        return result.toString();
+    }
+
+    /**
+     * Compute the canonical form of a puzzle.
+     * @param values the values of the 81 cells, row by row; 0 for the
+     * empty cells
+     * @return the values of the canonical form
+     */
+    public int[] canonicalize(int[] values) {
+        int[] transposed = new int[81];
+        for (int i = 0; i < 81; i++)
+            transposed[i] = values[(i % 9) * 9 + i / 9];
+        int[][] grids = new int[][] {values, transposed};
+        int[] result = new int[81];
+
+        // First row: any row, of the puzzle or of its transposition
+        Arrays.fill(best, 10);
+        nextCount = 0;
+        for (int t = 0; t < 2; t++) {
+            for (int y = 0; y < 9; y++) {
+                for (int p = 0; p < PERMS.length; p++) {
+                    long transform = ((long)t << TRANSPOSE_SHIFT) | ((long)p << PERM_SHIFT) | y;
+                    offer(grids[t], y, p, 0L, transform);
+                }
+            }
+        }
+        swap();
+        System.arraycopy(best, 0, result, 0, 9);
+
+        // Following rows
+        for (int level = 1; level < 9; level++) {
+            Arrays.fill(best, 10);
+            nextCount = 0;
+            for (int i = 0; i < count; i++) {
+                long transform = transforms[i];
+                int[] grid = grids[(int)(transform >>> TRANSPOSE_SHIFT) & 1];
+                int p = (int)(transform >>> PERM_SHIFT) & 0x7FF;
+                if (level % 3 != 0) {
+                    // Another row of the same band
+                    int band = getRow(transform, level - 1) / 3;
+                    for (int y = band * 3; y < band * 3 + 3; y++) {
+                        if (!isRowUsed(transform, level, y))
+                            offer(grid, y, p, labels[i], transform | ((long)y << (level * 4)));
+                    }
+                } else {
+                    // Any row of a band that is not used yet
+                    for (int y = 0; y < 9; y++) {
+                        if (!isBandUsed(transform, level, y / 3))
+                            offer(grid, y, p, labels[i], transform | ((long)y << (level * 4)));
+                    }
+                }
+            }
+            swap();
+            System.arraycopy(best, 0, result, level * 9, 9);
+        }
+        return result;
+    }
+
+    private static int getRow(long transform, int level) {
+        return (int)(transform >>> (level * 4)) & 0xF;
+    }
+
+    private static boolean isRowUsed(long transform, int level, int y) {
+        for (int l = level - level % 3; l < level; l++) {
+            if (getRow(transform, l) == y)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isBandUsed(long transform, int level, int band) {
+        for (int l = 0; l < level; l += 3) {
+            if (getRow(transform, l) / 3 == band)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Try a row with a transformation, and keep the transformation if the row
+     * is not larger than the best one so far.
+     */
+    private void offer(int[] grid, int y, int p, long currentLabels, long transform) {
+        int cmp = compareRow(grid, y, PERMS[p], currentLabels);
+        if (cmp > 0)
+            return;
+        if (cmp < 0) {
+            System.arraycopy(row, 0, best, 0, 9);
+            nextCount = 0;
+        }
+        if (nextCount == nextTransforms.length) {
+            nextTransforms = Arrays.copyOf(nextTransforms, nextCount * 2);
+            nextLabels = Arrays.copyOf(nextLabels, nextCount * 2);
+        }
+        nextTransforms[nextCount] = transform;
+        nextLabels[nextCount++] = rowLabels;
+    }
+
+    /**
+     * Compute a row of the transformed puzzle into {@link #row}, and compare
+     * it with the best row so far. The computation stops as soon as the row
+     * is known to be larger.
+     * @return a negative value, zero or a positive value if the row is
+     * smaller, equal or larger than the best row
+     */
+    private int compareRow(int[] grid, int y, int[] perm, long currentLabels) {
+        int cmp = 0;
+        for (int col = 0; col < 9; col++) {
+            int value = grid[y * 9 + perm[col]];
+            int label = 0;
+            if (value != 0) {
+                label = (int)(currentLabels >>> (value * 4)) & 0xF;
+                if (label == 0) {
+                    // First appearance of this digit
+                    label = (int)(currentLabels & 0xF) + 1;
+                    currentLabels = (currentLabels & ~0xFL) | label | ((long)label << (value * 4));
+                }
+            }
+            if (cmp == 0) {
+                if (label > best[col])
+                    return 1;
+                if (label < best[col])
+                    cmp = -1;
+            }
+            row[col] = label;
+        }
+        rowLabels = currentLabels;
+        return cmp;
+    }
+
+    private void swap() {
+        long[] tmp = transforms;
+        transforms = nextTransforms;
+        nextTransforms = tmp;
+        tmp = labels;
+        labels = nextLabels;
+        nextLabels = tmp;
+        count = nextCount;
+    }
+
+}
@@ -17,15 +17,16 @@ import java.util.*;
  * <li>The current value, or <code>0</code> if the cell is empty
  * <li>The bitset of potential values for this cell (the candidates).
  * </ul>
+ * The value, the potential values and the given flag are not stored in the
+ * cell itself, but packed in a single <tt>int</tt> owned by the grid. A cell
+ * is only a view over that entry.
  */
 public class Cell {
 
     private final Grid grid;
     private final int x;
     private final int y;
-    private int value = 0;
-    private BitSet potentialValues = new BitSet(9);
-    private boolean isGiven;
+    private final int index;
 
     /**
      * Create a new cell
@@ -37,17 +38,17 @@ public class Cell {
         this.grid = grid;
         this.x = x;
         this.y = y;
-        this.isGiven = false;
+        this.index = y * 9 + x;
     }
 
     public void setGiven() {
-        this.isGiven = true;
+        grid.setCellData(index, grid.cellData[index] | Grid.GIVEN_FLAG);
     }
     public void resetGiven() {
-        this.isGiven = false;
+        grid.setCellData(index, grid.cellData[index] & ~Grid.GIVEN_FLAG);
     }
     public boolean isGiven() {
-        return this.isGiven;
+        return (grid.cellData[index] & Grid.GIVEN_FLAG) != 0;
     }
 
     /**
@@ -68,13 +69,22 @@ public class Cell {
         return this.y;
     }
 
+    /**
+     * Get the index of this cell within the grid.
+     * 0 = top left, 8 = top right, 80 = bottom right
+     * @return the index of this cell (<tt>y * 9 + x</tt>)
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
     /**
      * Get the value of this cell. Returns <tt>0</tt>
      * if this cell is still empty.
      * @return the value of this cell.
      */
     public int getValue() {
-        return value;
+        return (grid.cellData[index] & Grid.VALUE_MASK) >>> Grid.VALUE_SHIFT;
     }
 
     /**
@@ -82,7 +92,7 @@ public class Cell {
      * @return whether this cell is empty
      */
     public boolean isEmpty() {
-        return (value == 0);
+        return (grid.cellData[index] & Grid.VALUE_MASK) == 0;
     }
 
     /**
@@ -91,7 +101,7 @@ public class Cell {
      * clear it.
      */
     public void setValue(int value) {
-        this.value = value;
+        grid.setCellData(index, (grid.cellData[index] & ~Grid.VALUE_MASK) | (value << Grid.VALUE_SHIFT));
     }
 
     /**
@@ -105,17 +115,10 @@ public class Cell {
      */
     public void setValueAndCancel(int value) {
 //a     assert value != 0;
-        this.value = value;
-        this.potentialValues.clear();
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
-            Grid.Region region = grid.getRegionAt(regionType, this.x, this.y);
-          if ( region != null ) {
-            for (int i = 0; i < 9; i++) {
-                Cell other = region.getCell(i);
-                other.removePotentialValue(value);
-            }
-          }
-        }
+        grid.setCellData(index, (grid.cellData[index] & Grid.GIVEN_FLAG) | (value << Grid.VALUE_SHIFT));
+        int mask = ~(1 << value);
+        for (int peer : grid.getTopology().getPeers(index))
+            grid.setCellData(peer, grid.cellData[peer] & mask);
     }
 
     /**
@@ -125,10 +128,33 @@ public class Cell {
      * bit number 1 to 9 is set if the corresponding
      * value is a potential value for this cell. Bit number
      * <tt>0</tt> is not used and ignored.
+     * <p>
+     * The returned bitset is a copy: modifying it has no effect
+     * on this cell. Use {@link #getPotentialValuesMask()} to avoid
+     * the allocation.
      * @return the potential values for this cell
      */
     public BitSet getPotentialValues() {
-        return this.potentialValues;
+        return BitSet.valueOf(new long[] { grid.cellData[index] & Grid.POTENTIALS_MASK });
+    }
+
+    /**
+     * Get the potential values for this cell as a bit mask.
+     * <p>
+     * Bit number <tt>value</tt> is set if the corresponding value
+     * is a potential value for this cell, as in {@link #getPotentialValues()}.
+     * @return the potential values for this cell
+     */
+    public int getPotentialValuesMask() {
+        return grid.cellData[index] & Grid.POTENTIALS_MASK;
+    }
+
+    /**
+     * Get the number of potential values for this cell.
+     * @return the number of potential values for this cell
+     */
+    public int getPotentialValuesCount() {
+        return Integer.bitCount(grid.cellData[index] & Grid.POTENTIALS_MASK);
     }
 
     /**
@@ -138,7 +164,7 @@ public class Cell {
      * @return whether the given value is a potential value for this cell
      */
     public boolean hasPotentialValue(int value) {
-        return this.potentialValues.get(value);
+        return (grid.cellData[index] & (1 << value)) != 0;
     }
 
     /**
@@ -146,7 +172,7 @@ public class Cell {
      * @param value the value to add, between 1 and 9, inclusive
      */
     public void addPotentialValue(int value) {
-        this.potentialValues.set(value, true);
+        grid.setCellData(index, grid.cellData[index] | (1 << value));
     }
 
     /**
@@ -154,15 +180,17 @@ public class Cell {
      * @param value the value to remove, between 1 and 9, inclusive
      */
     public void removePotentialValue(int value) {
-        this.potentialValues.set(value, false);
+        grid.setCellData(index, grid.cellData[index] & ~(1 << value));
     }
 
     public void removePotentialValues(BitSet valuesToRemove) {
-        this.potentialValues.andNot(valuesToRemove);
+        long[] words = valuesToRemove.toLongArray();
+        if (words.length > 0)
+            grid.setCellData(index, grid.cellData[index] & ~((int)words[0] & Grid.POTENTIALS_MASK));
     }
 
     public void clearPotentialValues() {
-        this.potentialValues.clear();
+        grid.setCellData(index, grid.cellData[index] & ~Grid.POTENTIALS_MASK);
     }
 
     /**
@@ -177,24 +205,26 @@ public class Cell {
      * @return the cells that are controlled by this cell
      */
     public Collection<Cell> getHouseCells() {
-        // Use a set to prevent duplicates (cells in both block and row/column)
-        Collection<Cell> result = new LinkedHashSet<Cell>();
-        // Iterate on region types (Block, Row, Column)
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
-            // Get region on which this cell is
-            Grid.Region region = grid.getRegionAt(regionType, x, y);
-          if ( region != null ) {
-            // Add all cell of that region
-            for (int i = 0; i < 9; i++) {
-                result.add(region.getCell(i));
-            }
-          }
-        }
-        // Remove this cell
-        result.remove(this);
+        // The peers are precomputed, without duplicates and without this cell
+        int[] peers = grid.getTopology().getPeers(index);
+        Collection<Cell> result = new LinkedHashSet<Cell>(peers.length * 2);
+        for (int peer : peers)
+            result.add(grid.getCell(peer));
         return result;
     }
 
+    /**
+     * Test whether the given cell is in the "house" of this
+     * cell, that is, shares a block, row or column with it.
+     * A cell is not in its own house.
+     * @param other the other cell
+     * @return whether the other cell is in the house of this cell
+     * @see #getHouseCells()
+     */
+    public boolean isPeerOf(Cell other) {
+        return grid.getTopology().isPeer(index, other.index);
+    }
+
     /**
      * Get a string representation of a cell. The notation that
      * is used is defined by the {@link Settings} class.
@@ -282,9 +312,7 @@ public class Cell {
      */
     public void copyTo(Cell other) {
 //a     assert this.x == other.x && this.y == other.y;
-        other.value = this.value;
-        other.potentialValues = (BitSet)this.potentialValues.clone();
-        other.isGiven = this.isGiven;
+        other.grid.setCellData(other.index, this.grid.cellData[this.index]);
     }
 
 }
@@ -25,6 +25,70 @@ public class Grid {
      */
     private Cell[][] cells = new Cell[9][9];
 
+    /*
+     * Packed content of the cells, indexed by cell index (y * 9 + x). The cells
+     * are only views over this array. Bits 1 to 9 hold the potential values
+     * (bit 0 is not used), bits 10 to 13 hold the value and bit 14 is set for
+     * the givens.
+     */
+    final int[] cellData = new int[81];
+
+    static final int POTENTIALS_MASK = 0x3FE;
+    static final int VALUE_SHIFT = 10;
+    static final int VALUE_MASK = 0xF << VALUE_SHIFT;
+    static final int GIVEN_FLAG = 1 << 14;
+
+    /*
+     * Potential positions of each value within each region of the topology,
+     * indexed by region * 10 + value. Bit i is set if the i-th cell of the
+     * region has the value as a potential value. Built on first use, then
+     * kept up to date by setCellData(); null when not built.
+     */
+    private int[] positionMasks = null;
+
+    /*
+     * Zobrist hash of the values and potential values of the cells, maintained
+     * incrementally by setCellData(). The keys of the value 0 are 0, so that
+     * the hash of an empty grid without potential values is 0.
+     */
+    private long zobristHash = 0;
+
+    private static final long[] valueKeys = new long[81 * 10];
+    private static final long[] potentialKeys = new long[81 * 10];
+    static {
+        Random random = new Random(0x5EED5EEDL);
+        for (int index = 0; index < 81; index++) {
+            for (int value = 1; value <= 9; value++) {
+                valueKeys[index * 10 + value] = random.nextLong();
+                potentialKeys[index * 10 + value] = random.nextLong();
+            }
+        }
+    }
+
+    /*
+     * Undo journal. While at least one mark is active, setCellData() records
+     * the index and the previous packed content of each modified cell, so
+     * that rollback() can undo the changes made since a mark.
+     */
+    private int[] trail = null;
+    private int trailSize = 0;
+    private int activeMarks = 0;
+
+    /*
+     * Change counter, incremented by each change of a cell. The counter value
+     * of the last change of each cell is kept, so that the hint producers can
+     * skip the regions that have not changed since they last examined them.
+     * The last change of the potential positions of each value, or of the
+     * cells holding it, is kept too, for the producers that examine each
+     * value on its own.
+     */
+    private long changeCount = 0;
+    private final long[] cellChanges = new long[81];
+    private final long[] valueChanges = new long[10];
+
+    // Last snapshot taken or restored, while the grid has not changed since
+    private Snapshot snapshot = null;
+
     // Views
     private Row[] rows = new Row[9];
     private Column[] columns = new Column[9];
@@ -34,7 +98,26 @@ public class Grid {
     private AntiDiagonal[] antidiagonal = new AntiDiagonal[1];
     private DisjointGroup[] disjointgroups = new DisjointGroup[9];
     private Windoku[] windokus = new Windoku[9];
-    private Custom[] custom = new Custom[Settings.getInstance().getCount()];
+    private Custom[] custom;
+
+    /*
+     * Region type identifiers. They are dense, so that they can be used as
+     * array indexes instead of comparing classes; see getRegionTypeIds().
+     */
+    public static final int BLOCK = 0;
+    public static final int ROW = 1;
+    public static final int COLUMN = 2;
+    public static final int DIAGONAL = 3;
+    public static final int ANTIDIAGONAL = 4;
+    public static final int DISJOINTGROUP = 5;
+    public static final int WINDOKU = 6;
+    public static final int CUSTOM = 7;
+    public static final int REGION_TYPE_COUNT = 8;
+
+    private static final int[] REGION_MAX = { 9, 9, 9, 1, 1, 9, 9, 0};
+
+    // Views by region type identifier
+    private final Region[][] regionsByType = { blocks, rows, columns, diagonal, antidiagonal, disjointgroups, windokus, null};
 
     private boolean isRC33 = true;
     private boolean isLatinSquare = false;
@@ -44,7 +127,11 @@ public class Grid {
     private boolean isDisjointGroups = false;
     private boolean isWindoku = false;
     private boolean isCustom = false;
-    private int CustomNum = Settings.getInstance().getCount();
+    private int CustomNum;
+    private String customLayout = null;
+
+    // The variant this grid was created with, or derived from its current state
+    private Variant variant;
 
     // Diagonal
     private int[][] DiagonalCells = { { 8, 16, 24, 32, 40, 48, 56, 64, 72}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}, {-1, -1, -1, -1, -1, -1, -1, -1, -1}};
@@ -75,15 +162,29 @@ public class Grid {
     private int[][] CustomIndexOf = new int[9][9];
 
     /**
-     * Create a new 9x9 Sudoku grid. All cells are set to empty
+     * Create a new 9x9 Sudoku grid of the variant selected in the
+     * {@link Settings}. All cells are set to empty
      */
     public Grid() {
+        this(Variant.fromSettings());
+        if ( isCustom && customLayout != null ) {
+            Settings.getInstance().setCount( CustomNum);
+        }
+    }
+
+    /**
+     * Create a new 9x9 Sudoku grid of the given variant. All cells are set
+     * to empty. The {@link Settings} are not used.
+     * @param variant the variant of the grid
+     */
+    public Grid(Variant variant) {
+        this.variant = variant;
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 cells[y][x] = new Cell(this, x, y);
             }
         }
-        isRC33 = Settings.getInstance().isRC33();
+        isRC33 = variant.isRC33();
         // Build subparts views
         for (int i = 0; i < 9; i++) {
             rows[i] = new Row(i);
@@ -98,25 +199,41 @@ public class Grid {
         }
         diagonal[0] = new Diagonal(0);
         antidiagonal[0] = new AntiDiagonal(0);
+        CustomNum = variant.getCustomCount();
+        custom = new Custom[CustomNum];
         for (int i = 0; i < CustomNum; i++) {
             custom[i] = new Custom(i);
         }
+        regionsByType[CUSTOM] = custom;
 
         // DisjointGroup
         disjointgroupsInitialise();
 
-        isLatinSquare = Settings.getInstance().isLatinSquare();
-        isDiagonals = Settings.getInstance().isDiagonals();
-        isXDiagonal = Settings.getInstance().isXDiagonal();
-        isXAntiDiagonal = Settings.getInstance().isXAntiDiagonal();
-        isDisjointGroups = Settings.getInstance().isDisjointGroups();
-        isWindoku = Settings.getInstance().isWindoku();
-        isCustom = Settings.getInstance().isCustom();
-        if ( isCustom && Settings.getInstance().getCustom() != null ) {
-            customInitialize( Settings.getInstance().getCustom());
+        isLatinSquare = variant.isLatinSquare();
+        isDiagonals = variant.isDiagonals();
+        isXDiagonal = variant.isXDiagonal();
+        isXAntiDiagonal = variant.isXAntiDiagonal();
+        isDisjointGroups = variant.isDisjointGroups();
+        isWindoku = variant.isWindoku();
+        isCustom = variant.isCustom();
+        if ( isCustom && variant.getCustom() != null ) {
+            customLayout( variant.getCustom());
         }
     }
 
+    /**
+     * Get the variant of this grid, that is, the regions it currently has.
+     * @return the variant of this grid
+     */
+    public Variant getVariant() {
+        if (!variant.matches(isRC33, isLatinSquare, isDiagonals, isXDiagonal, isXAntiDiagonal,
+                isDisjointGroups, isWindoku, isCustom, (isCustom ? customLayout : null), CustomNum)) {
+            variant = new Variant(isRC33, isLatinSquare, isDiagonals, isXDiagonal, isXAntiDiagonal,
+                    isDisjointGroups, isWindoku, isCustom, (isCustom ? customLayout : null), CustomNum);
+        }
+        return variant;
+    }
+
     public boolean isRC33() { return this.isRC33; }
     public void setRC33() { this.isRC33 = true; }
     public void setRC33(boolean b) { this.isRC33 = b; }
@@ -191,30 +308,50 @@ public class Grid {
     }
 
     /**
-     * Get the 9 regions of the given type
-     * @param regionType the type of the regions to return. Must be one of
-     * {@link Grid.Block}, {@link Grid.Row} or {@link Grid.Column}.
-     * @return the 9 regions of the given type
+     * Get the cell at the given index
+     * @param index the index of the cell (<tt>y * 9 + x</tt>)
+     * @return the cell at the given index
+     * @see Cell#getIndex()
      */
-    public Region[] getRegions(Class<? extends Region> regionType) {
-        if (regionType == Row.class)
-            return this.rows;
+    public Cell getCell(int index) {
+        return this.cells[index / 9][index % 9];
+    }
+
+    /**
+     * Get the identifier of a region type.
+     * @param regionType the type of the regions, such as {@link Grid.Row}
+     * @return the identifier of the region type, such as {@link #ROW},
+     * or -1 if the given class is not a region type
+     */
+    public static int getRegionTypeId(Class<? extends Region> regionType) {
+        if (regionType == Block.class)
+            return BLOCK;
+        else if (regionType == Row.class)
+            return ROW;
         else if (regionType == Column.class)
-            return this.columns;
-        else if (regionType == Block.class)
-            return this.blocks;
+            return COLUMN;
         else if (regionType == Diagonal.class)
-            return this.diagonal;
+            return DIAGONAL;
         else if (regionType == AntiDiagonal.class)
-            return this.antidiagonal;
+            return ANTIDIAGONAL;
         else if (regionType == DisjointGroup.class)
-            return this.disjointgroups;
+            return DISJOINTGROUP;
         else if (regionType == Windoku.class)
-            return this.windokus;
+            return WINDOKU;
         else if (regionType == Custom.class)
-            return this.custom;
+            return CUSTOM;
         else
-            return null;
+            return -1;
+    }
+
+    /**
+     * Get the regions of the given type
+     * @param regionType the identifier of the type of the regions to return,
+     * such as {@link #BLOCK}, {@link #ROW} or {@link #COLUMN}.
+     * @return the regions of the given type
+     */
+    public Region[] getRegions(int regionType) {
+        return regionsByType[regionType];
     }
 
     /**
@@ -223,25 +360,28 @@ public class Grid {
      * {@link Grid.Block}, {@link Grid.Row} or {@link Grid.Column}.
      * @return the 9 regions of the given type
      */
+    public Region[] getRegions(Class<? extends Region> regionType) {
+        int id = getRegionTypeId(regionType);
+        return (id < 0 ? null : regionsByType[id]);
+    }
+
+    /**
+     * Get the number of regions of the given type
+     * @param regionType the identifier of the type of the regions
+     * @return the number of regions of the given type
+     */
+    public int getRegionMax(int regionType) {
+        return (regionType == CUSTOM ? CustomNum : REGION_MAX[regionType]);
+    }
+
+    /**
+     * Get the number of regions of the given type
+     * @param regionType the type of the regions
+     * @return the number of regions of the given type
+     */
     public int getRegionMax(Class<? extends Region> regionType) {
-        if (regionType == Row.class)
-            return 9;
-        else if (regionType == Column.class)
-            return 9;
-        else if (regionType == Block.class)
-            return 9;
-        else if (regionType == Diagonal.class)
-            return 1;
-        else if (regionType == AntiDiagonal.class)
-            return 1;
-        else if (regionType == DisjointGroup.class)
-            return 9;
-        else if (regionType == Windoku.class)
-            return 9;
-        else if (regionType == Custom.class)
-            return CustomNum;
-        else
-            return 0;
+        int id = getRegionTypeId(regionType);
+        return (id < 0 ? 0 : getRegionMax(id));
     }
 
     /**
@@ -373,7 +513,7 @@ public class Grid {
      * @return the value of the cell, or 0 if the cell is empty
      */
     public int getCellValue(int x, int y) {
-        return this.cells[y][x].getValue();
+        return (this.cellData[y * 9 + x] & VALUE_MASK) >>> VALUE_SHIFT;
     }
 
     /**
@@ -495,90 +635,312 @@ public class Grid {
         return CustomAt[y][x];
     }
 
-    public Grid.Region getRegionAt(Class<? extends Grid.Region> regionType, int x, int y) {
-        if (Grid.Row.class.equals(regionType))
-            return getRowAt(x, y);
-        else if (Grid.Column.class.equals(regionType))
-            return getColumnAt(x, y);
-        else if (Grid.Block.class.equals(regionType))
-            return getBlockAt(x, y);
-        else if (Grid.Diagonal.class.equals(regionType))
-            return getDiagonalAt(x, y);
-        else if (Grid.AntiDiagonal.class.equals(regionType))
-            return getAntiDiagonalAt(x, y);
-        else if (Grid.DisjointGroup.class.equals(regionType))
-            return getDisjointGroupAt(x, y);
-        else if (Grid.Windoku.class.equals(regionType))
-            return getWindokuAt(x, y);
-        else if (Grid.Custom.class.equals(regionType))
-            return getCustomAt(x, y);
-        else
+    /**
+     * Get the region of the given type containing the given location
+     * @param regionType the identifier of the type of the region
+     * @param x the horizontal coordinate
+     * @param y the vertical coordinate
+     * @return the region at the given coordinates, or <tt>null</tt> if no
+     * region of the given type contains the cell (diagonals, extra regions)
+     */
+    public Grid.Region getRegionAt(int regionType, int x, int y) {
+        switch (regionType) {
+        case BLOCK:         return getBlockAt(x, y);
+        case ROW:           return getRowAt(x, y);
+        case COLUMN:        return getColumnAt(x, y);
+        case DIAGONAL:      return getDiagonalAt(x, y);
+        case ANTIDIAGONAL:  return getAntiDiagonalAt(x, y);
+        case DISJOINTGROUP: return getDisjointGroupAt(x, y);
+        case WINDOKU:       return getWindokuAt(x, y);
+        case CUSTOM:        return getCustomAt(x, y);
+        default:
             return null;
+        }
     }
 
-    public Grid.Region getRegionAt(Class<? extends Grid.Region> regionType, Cell cell) {
+    public Grid.Region getRegionAt(int regionType, Cell cell) {
         return getRegionAt(regionType, cell.getX(), cell.getY());
     }
 
+    public Grid.Region getRegionAt(Class<? extends Grid.Region> regionType, int x, int y) {
+        return getRegionAt(getRegionTypeId(regionType), x, y);
+    }
+
+    public Grid.Region getRegionAt(Class<? extends Grid.Region> regionType, Cell cell) {
+        return getRegionAt(getRegionTypeId(regionType), cell.getX(), cell.getY());
+    }
+
+    public int getRegionNum(int regionType, int x, int y) {
+        Grid.Region region = getRegionAt(regionType, x, y);
+        return (region == null ? -1 : region.getRegionNum());
+    }
+
+    public int getRegionNum(int regionType, Cell cell) {
+        return getRegionNum(regionType, cell.getX(), cell.getY());
+    }
+
     public int getRegionNum(Class<? extends Grid.Region> regionType, int x, int y) {
-        if (Grid.Row.class.equals(regionType))
-            return getRowAt(x, y).getRowNum();
-        else if (Grid.Column.class.equals(regionType))
-            return getColumnAt(x, y).getColumnNum();
-        else if (Grid.Block.class.equals(regionType))
-            return getBlockAt(x, y).getBlockNum();
-        else if (Grid.Diagonal.class.equals(regionType))
-            return getDiagonalAt(x, y).getDiagonalNum();
-        else if (Grid.AntiDiagonal.class.equals(regionType))
-            return getAntiDiagonalAt(x, y).getAntiDiagonalNum();
-        else if (Grid.DisjointGroup.class.equals(regionType))
-            return getDisjointGroupAt(x, y).getDisjointGroupNum();
-        else if (Grid.Windoku.class.equals(regionType))
-            return getWindokuAt(x, y).getWindokuNum();
-        else if (Grid.Custom.class.equals(regionType))
-            return getCustomAt(x, y).getCustomNum();
-        else
-            return -1;
+        return getRegionNum(getRegionTypeId(regionType), x, y);
     }
 
     public int getRegionNum(Class<? extends Grid.Region> regionType, Cell cell) {
-        return getRegionNum(regionType, cell.getX(), cell.getY());
+        return getRegionNum(getRegionTypeId(regionType), cell.getX(), cell.getY());
+    }
+
+    public String getRegionName(int regionType, int x, int y) {
+        Grid.Region region = getRegionAt(regionType, x, y);
+        return (region == null ? null : region.toString());
+    }
+
+    public String getRegionName(int regionType, Cell cell) {
+        return getRegionName(regionType, cell.getX(), cell.getY());
     }
 
     public String getRegionName(Class<? extends Grid.Region> regionType, int x, int y) {
-        if (Grid.Row.class.equals(regionType))
-            return getRowAt(x, y).toString();
-        else if (Grid.Column.class.equals(regionType))
-            return getColumnAt(x, y).toString();
-        else if (Grid.Block.class.equals(regionType))
-            return getBlockAt(x, y).toString();
-        else if (Grid.Diagonal.class.equals(regionType))
-            return getDiagonalAt(x, y).toString();
-        else if (Grid.AntiDiagonal.class.equals(regionType))
-            return getAntiDiagonalAt(x, y).toString();
-        else if (Grid.DisjointGroup.class.equals(regionType))
-            return getDisjointGroupAt(x, y).toString();
-        else if (Grid.Windoku.class.equals(regionType))
-            return getWindokuAt(x, y).toString();
-        else if (Grid.Custom.class.equals(regionType))
-            return getCustomAt(x, y).toString();
-        else
-            return null;
+        return getRegionName(getRegionTypeId(regionType), x, y);
     }
 
     public String getRegionName(Class<? extends Grid.Region> regionType, Cell cell) {
-        return getRegionName(regionType, cell.getX(), cell.getY());
+        return getRegionName(getRegionTypeId(regionType), cell.getX(), cell.getY());
     }
 
     public ArrayList<Grid.Region> getRegionsAt(Cell cell) {
-        ArrayList<Grid.Region> regions = new ArrayList<Grid.Region>();
-        for (Class<? extends Grid.Region> regionType : getRegionTypes()) {
-            Grid.Region region = getRegionAt(regionType, cell.getX(), cell.getY());
-            if ( region != null ) {
-                regions.add(region);
+        int[] cellRegions = getTopology().getCellRegions(cell.getIndex());
+        ArrayList<Grid.Region> regions = new ArrayList<Grid.Region>(cellRegions.length);
+        for (int region : cellRegions)
+            regions.add(getRegion(region));
+        return regions;
+    }
+
+    private Topology _topology = null;
+    private Region[] _topologyRegions = null;
+    private int[][] _topologyIndexes = null;
+
+    /**
+     * Get the precomputed index tables of the regions of this grid.
+     * @return the topology of this grid
+     */
+    public Topology getTopology() {
+        if (_topology == null) {
+            Variant variant = getVariant();
+            _topology = variant.getTopology();
+            if (_topology == null) {
+                _topology = Topology.getInstance(this);
+                variant.setTopology(_topology);
             }
         }
-        return regions;
+        return _topology;
+    }
+
+    /**
+     * Get a region by its index in the {@link Topology} of this grid.
+     * @param index the index of the region
+     * @return the region at the given index
+     */
+    public Region getRegion(int index) {
+        if (_topologyRegions == null)
+            buildTopologyRegions();
+        return _topologyRegions[index];
+    }
+
+    /**
+     * Get the index of a region in the {@link Topology} of this grid.
+     * @param region the region
+     * @return the index of the region, or -1 if the region is not one
+     * of the regions of this grid's variant
+     */
+    public int getRegionIndex(Region region) {
+        if (_topologyRegions == null)
+            buildTopologyRegions();
+        int[] indexes = _topologyIndexes[region.getRegionTypeId()];
+        int num = region.getRegionNum();
+        if (indexes == null || num < 0 || num >= indexes.length)
+            return -1;
+        return indexes[num];
+    }
+
+    private void buildTopologyRegions() {
+        List<Region> regions = new ArrayList<Region>();
+        int[][] indexes = new int[REGION_TYPE_COUNT][];
+        for (int regionType : getRegionTypeIds()) {
+            Region[] typeRegions = getRegions(regionType);
+            int regionmax = getRegionMax(regionType);
+            indexes[regionType] = new int[regionmax];
+            for (int i = 0; i < regionmax; i++) {
+                if (typeRegions[i] != null) {
+                    indexes[regionType][i] = regions.size();
+                    regions.add(typeRegions[i]);
+                } else {
+                    indexes[regionType][i] = -1;
+                }
+            }
+        }
+        _topologyIndexes = indexes;
+        _topologyRegions = regions.toArray(new Region[regions.size()]);
+    }
+
+    /**
+     * Get the potential positions of a value within a region of the
+     * {@link Topology} of this grid, as a bit mask. Bit <tt>i</tt> is set
+     * if the cell at index <tt>i</tt> of the region has the value as a
+     * potential value.
+     * <p>
+     * The masks are maintained incrementally as potential values are
+     * added and removed, so this method neither scans nor allocates.
+     * @param region the index of the region in the topology
+     * @param value the value, between 1 and 9, inclusive
+     * @return the potential positions of the value within the region
+     * @see Region#getPotentialPositionsMask(int)
+     */
+    public int getPotentialPositionsMask(int region, int value) {
+        if (positionMasks == null)
+            buildPositionMasks();
+        return positionMasks[region * 10 + value];
+    }
+
+    private void buildPositionMasks() {
+        Topology topology = getTopology();
+        int[] masks = new int[topology.getRegionCount() * 10];
+        for (int region = 0; region < topology.getRegionCount(); region++) {
+            int[] regionCells = topology.getRegionCells(region);
+            for (int pos = 0; pos < 9; pos++) {
+                int potentials = cellData[regionCells[pos]] & POTENTIALS_MASK;
+                while (potentials != 0) {
+                    int value = Integer.numberOfTrailingZeros(potentials);
+                    masks[region * 10 + value] |= 1 << pos;
+                    potentials &= potentials - 1;
+                }
+            }
+        }
+        positionMasks = masks;
+    }
+
+    /*
+     * Change the packed content of a cell. All the modifications of the cells
+     * go through this method, so that the potential positions and the undo
+     * journal are kept up to date.
+     */
+    void setCellData(int index, int data) {
+        int previous = cellData[index];
+        if (previous == data)
+            return;
+        if (activeMarks > 0) {
+            if (trail == null)
+                trail = new int[256];
+            else if (trailSize == trail.length)
+                trail = Arrays.copyOf(trail, trailSize * 2);
+            trail[trailSize++] = index;
+            trail[trailSize++] = previous;
+        }
+        writeCellData(index, previous, data);
+    }
+
+    private void writeCellData(int index, int previous, int data) {
+        cellData[index] = data;
+        cellChanges[index] = ++changeCount;
+        snapshot = null;
+        if (((previous ^ data) & VALUE_MASK) != 0) {
+            int previousValue = (previous & VALUE_MASK) >>> VALUE_SHIFT;
+            int value = (data & VALUE_MASK) >>> VALUE_SHIFT;
+            zobristHash ^= valueKeys[index * 10 + previousValue] ^ valueKeys[index * 10 + value];
+            valueChanges[previousValue] = valueChanges[value] = changeCount;
+        }
+        int changed = (previous ^ data) & POTENTIALS_MASK;
+        if (changed != 0) {
+            int[] regions = null;
+            int[] positions = null;
+            if (positionMasks != null) {
+                regions = _topology.getCellRegions(index);
+                positions = _topology.getCellRegionPositions(index);
+            }
+            while (changed != 0) {
+                int value = Integer.numberOfTrailingZeros(changed);
+                zobristHash ^= potentialKeys[index * 10 + value];
+                valueChanges[value] = changeCount;
+                if (regions != null) {
+                    for (int i = 0; i < regions.length; i++)
+                        positionMasks[regions[i] * 10 + value] ^= 1 << positions[i];
+                }
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    /**
+     * Get the Zobrist hash of this grid. The hash covers the values and the
+     * potential values of the cells, but not the givens, consistently with
+     * {@link #equals(Object)}. It is maintained incrementally, so getting it
+     * is free; it can be used as a key for caches of results.
+     * @return the 64-bit hash of this grid
+     */
+    public long getZobristHash() {
+        return zobristHash;
+    }
+
+    /**
+     * Get the change counter of this grid. The counter is incremented by
+     * each change of a cell (value, potential values or given flag), so
+     * that a region has not changed since the counter was <tt>n</tt> if
+     * its {@link Region#getLastChange()} is not greater than <tt>n</tt>.
+     * The counters of different grids cannot be compared.
+     * @return the change counter of this grid
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Get the value of the change counter at the last change of the
+     * potential positions of a value, or of the cells holding that value.
+     * @param value the value, from 1 to 9
+     * @return the last change of the value, or 0 if it has never changed
+     * @see #getChangeCount()
+     */
+    public long getLastValueChange(int value) {
+        return valueChanges[value];
+    }
+
+    /**
+     * Mark the current state of this grid, so that it can later be restored
+     * by {@link #rollback(int)} without copying the whole grid.
+     * <p>
+     * From this call on, every change of a cell (value, potential values
+     * or given flag) is recorded, until the mark is released with
+     * {@link #release(int)}. Marks can be nested, but must be released in
+     * reverse order.
+     * @return the mark, to pass to {@link #rollback(int)} and
+     * {@link #release(int)}
+     */
+    public int mark() {
+        activeMarks++;
+        return trailSize;
+    }
+
+    /**
+     * Undo all the changes made to this grid since the given mark.
+     * The mark remains active, so that the grid can be modified and
+     * rolled back again.
+     * @param mark the mark returned by {@link #mark()}
+     */
+    public void rollback(int mark) {
+//a     assert activeMarks > 0 && mark <= trailSize;
+        while (trailSize > mark) {
+            int previous = trail[--trailSize];
+            int index = trail[--trailSize];
+            writeCellData(index, cellData[index], previous);
+        }
+    }
+
+    /**
+     * Release the given mark. The changes made since the mark are kept.
+     * Once the outermost mark is released, changes are no longer recorded.
+     * @param mark the mark returned by {@link #mark()}
+     */
+    public void release(int mark) {
+//a     assert activeMarks > 0;
+        activeMarks--;
+        if (activeMarks == 0)
+            trailSize = 0;
     }
 
     private List<Class<? extends Grid.Region>> _regionTypes = null;
@@ -624,6 +986,27 @@ public class Grid {
         return _regionTypes;
     }
 
+    private int[] _regionTypeIds = null;
+
+    /**
+     * Get the identifiers of the region types of this grid, in the order
+     * of {@link #getRegionTypes()}.
+     * @return the identifiers of the region types. The resulting array
+     * must not be modified
+     */
+    public int[] getRegionTypeIds() {
+        if (_regionTypeIds == null)
+            _regionTypeIds = toRegionTypeIds(getRegionTypes());
+        return _regionTypeIds;
+    }
+
+    private static int[] toRegionTypeIds(List<Class<? extends Grid.Region>> regionTypes) {
+        int[] result = new int[regionTypes.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = getRegionTypeId(regionTypes.get(i));
+        return result;
+    }
+
     private List<Class<? extends Grid.Region>> _regionTypes3 = null;
 
     /**
@@ -647,9 +1030,29 @@ public class Grid {
         return _regionTypes3;
     }
 
+    private int[] _regionTypeIds3 = null;
+
+    /**
+     * Get the identifiers of the three basic region types of this grid,
+     * in the order of {@link #getRegionTypes3()}.
+     * @return the identifiers of the region types. The resulting array
+     * must not be modified
+     */
+    public int[] getRegionTypeIds3() {
+        if (_regionTypeIds3 == null)
+            _regionTypeIds3 = toRegionTypeIds(getRegionTypes3());
+        return _regionTypeIds3;
+    }
+
     private void reset_regionTypes() {
         _regionTypes = null;
         _regionTypes3 = null;
+        _regionTypeIds = null;
+        _regionTypeIds3 = null;
+        _topology = null;
+        _topologyRegions = null;
+        _topologyIndexes = null;
+        positionMasks = null;
     }
 
     // Grid regions implementation (rows, columns, 3x3 squares)
@@ -670,6 +1073,19 @@ public class Grid {
          */
         public abstract Cell getCell(int index);
 
+        /**
+         * Get the identifier of the type of this region, such as
+         * {@link Grid#ROW}.
+         * @return the identifier of the type of this region
+         */
+        public abstract int getRegionTypeId();
+
+        /**
+         * Get the number of this region among the regions of its type.
+         * @return the number of this region
+         */
+        public abstract int getRegionNum();
+
         /**
          * Get the index of the given cell within this region.
          * <p>
@@ -714,11 +1130,26 @@ public class Grid {
          * @see Cell#getPotentialValues()
          */
         public BitSet getPotentialPositions(int value) {
-            BitSet result = new BitSet(9);
+            return BitSet.valueOf(new long[] { getPotentialPositionsMask(value) });
+        }
+
+        /**
+         * Get the potential positions of the given value within this region,
+         * as a bit mask. Bit <tt>i</tt> is set if the cell at index <tt>i</tt>
+         * has the given value as a potential value, as in
+         * {@link #getPotentialPositions(int)}.
+         * @param value the value whose potential positions to get
+         * @return the potential positions of the given value within this region
+         */
+        public int getPotentialPositionsMask(int value) {
+            int region = getRegionIndex(this);
+            if (region >= 0)
+                return Grid.this.getPotentialPositionsMask(region, value);
+            // Not a region of this variant: scan the cells
+            int result = 0;
             for (int index = 0; index < 9; index++) {
-            //  result.set(index, getCell(index).hasPotentialValue(value));
                 if ( getCell(index).hasPotentialValue(value) ) {
-                    result.set(index);
+                    result |= 1 << index;
                 }
             }
             return result;
@@ -776,6 +1207,23 @@ public class Grid {
             return result;
         }
 
+        /**
+         * Get the value of the change counter of the grid at the last
+         * change of a cell of this region.
+         * @return the last change of this region, or 0 if its cells have
+         * never changed
+         * @see Grid#getChangeCount()
+         */
+        public long getLastChange() {
+            long result = 0;
+            for (int i = 0; i < 9; i++) {
+                long change = cellChanges[getCell(i).getIndex()];
+                if (change > result)
+                    result = change;
+            }
+            return result;
+        }
+
         /**
          * Get a string representation of this region's type
          */
@@ -805,6 +1253,16 @@ public class Grid {
             return this.rowNum;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return ROW;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.rowNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             return cells[rowNum][index];
@@ -866,6 +1324,16 @@ public class Grid {
             return this.columnNum;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return COLUMN;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.columnNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             return cells[index][columnNum];
@@ -940,6 +1408,16 @@ public class Grid {
           }
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return BLOCK;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return getBlockNum();
+        }
+
         @Override
         public Cell getCell(int index) {
           if ( isRC33 ) {
@@ -1003,6 +1481,16 @@ public class Grid {
             return this.diagonalNum;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return DIAGONAL;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.diagonalNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             int cellIndex = DiagonalCells[this.diagonalNum][index];
@@ -1052,6 +1540,16 @@ public class Grid {
             return this.antidiagonalNum;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return ANTIDIAGONAL;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.antidiagonalNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             int cellIndex = AntiDiagonalCells[this.antidiagonalNum][index];
@@ -1101,6 +1599,16 @@ public class Grid {
             return this.disjointgroupNum;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return DISJOINTGROUP;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.disjointgroupNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             int cellIndex = DisjointGroupCells[this.disjointgroupNum][index];
@@ -1152,6 +1660,16 @@ public class Grid {
             return WindokuHCells[ this.windokuNum];
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return WINDOKU;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.windokuNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             int cellIndex = WindokuCells[this.windokuNum][index];
@@ -1212,6 +1730,16 @@ public class Grid {
             return this.numRows;
         }
 
+        @Override
+        public int getRegionTypeId() {
+            return CUSTOM;
+        }
+
+        @Override
+        public int getRegionNum() {
+            return this.customNum;
+        }
+
         @Override
         public Cell getCell(int index) {
             int cellIndex = CustomCells[this.customNum][index];
@@ -1278,6 +1806,12 @@ public class Grid {
      * custom regions - region numbered 1-X, ideally a few regions is good.
      */
     public void customInitialize(String regions) {
+        customLayout( regions);
+        Settings.getInstance().setCount( CustomNum);
+    }
+
+    private void customLayout(String regions) {
+        customLayout = regions;
     //  regions = regions.replace( "A", "1"); regions = regions.replace( "B", "2"); regions = regions.replace( "C", "3"); regions = regions.replace( "D", "4"); regions = regions.replace( "E", "5"); regions = regions.replace( "F", "6"); regions = regions.replace( "G", "7"); regions = regions.replace( "H", "8"); regions = regions.replace( "I", "9");
         CustomNum = 0; regions = regions.replace( ".", "@");
         for (int y = 0; y < 9; y++) { int x = 0;
@@ -1288,7 +1822,14 @@ public class Grid {
                 }
             }
         }
-        Settings.getInstance().setCount( CustomNum);
+        if ( custom.length != CustomNum ) {
+            custom = new Custom[CustomNum];
+            for (int i = 0; i < CustomNum; i++) {
+                custom[i] = new Custom(i);
+            }
+            regionsByType[CUSTOM] = custom;
+        }
+        reset_regionTypes();
         for (int c = 0; c < 81; c++) { CustomAt[ c/9][ c%9] = -1; CustomIndexOf[ c/9][ c%9] = -1;
             for (int y = 0; y < 9; y++) {
                 for (int x = 0; x < 9; x++) {
@@ -1314,15 +1855,12 @@ public class Grid {
      * the given value
      */
     public Cell getFirstCancellerOf(Cell target, int value) {
-        for (Class<? extends Region> regionType : getRegionTypes()) {
-            Region region = getRegionAt(regionType, target.getX(), target.getY());
-          if ( region != null ) {
-            for (int i = 0; i < 9; i++) {
-                Cell cell = region.getCell(i);
-                if (!cell.equals(target) && cell.getValue() == value)
-                    return cell;
+        Topology topology = getTopology();
+        for (int region : topology.getCellRegions(target.getIndex())) {
+            for (int index : topology.getRegionCells(region)) {
+                if (index != target.getIndex() && getCellValue(index % 9, index / 9) == value)
+                    return getCell(index);
             }
-          }
         }
         return null;
     }
@@ -1334,11 +1872,88 @@ public class Grid {
      * @param other the grid to copy this grid to
      */
     public void copyTo(Grid other) {
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                this.cells[y][x].copyTo(other.cells[y][x]);
+        if (other.activeMarks > 0) {
+            // Journaled copy, so that it can be rolled back
+            for (int i = 0; i < 81; i++)
+                other.setCellData(i, this.cellData[i]);
+            return;
+        }
+        for (int i = 0; i < 81; i++) {
+            int previous = other.cellData[i];
+            int data = this.cellData[i];
+            if (previous != data) {
+                other.cellChanges[i] = ++other.changeCount;
+                int changed = (previous ^ data) & POTENTIALS_MASK;
+                if (((previous ^ data) & VALUE_MASK) != 0)
+                    changed |= (1 << ((previous & VALUE_MASK) >>> VALUE_SHIFT))
+                            | (1 << ((data & VALUE_MASK) >>> VALUE_SHIFT));
+                while (changed != 0) {
+                    other.valueChanges[Integer.numberOfTrailingZeros(changed)] = other.changeCount;
+                    changed &= changed - 1;
+                }
             }
         }
+        System.arraycopy(this.cellData, 0, other.cellData, 0, 81);
+        other.zobristHash = this.zobristHash;
+        other.snapshot = this.snapshot;
+        if (this.positionMasks != null && other._topology == this._topology) {
+            if (other.positionMasks == null)
+                other.positionMasks = new int[this.positionMasks.length];
+            System.arraycopy(this.positionMasks, 0, other.positionMasks, 0, this.positionMasks.length);
+        } else {
+            other.positionMasks = null;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the content of a grid: the values, potential
+     * values and givens of its cells, packed in a single array.
+     * <p>
+     * A snapshot is much smaller than a grid copy, and can be restored into
+     * any grid of the same variant using {@link Grid#restore(Snapshot)}.
+     */
+    public static final class Snapshot {
+
+        private final int[] cellData;
+        private final long zobristHash;
+
+        private Snapshot(int[] cellData, long zobristHash) {
+            this.cellData = cellData;
+            this.zobristHash = zobristHash;
+        }
+
+        /**
+         * Get the Zobrist hash of the grid at the time of the snapshot.
+         * @return the hash of the snapshot's content
+         * @see Grid#getZobristHash()
+         */
+        public long getZobristHash() {
+            return this.zobristHash;
+        }
+
+    }
+
+    /**
+     * Take a snapshot of the content of this grid. Snapshots are immutable
+     * and copy-on-write: taking a snapshot again while the grid has not
+     * changed returns the same instance.
+     * @return the snapshot of this grid
+     */
+    public Snapshot getSnapshot() {
+        if (snapshot == null)
+            snapshot = new Snapshot(cellData.clone(), zobristHash);
+        return snapshot;
+    }
+
+    /**
+     * Restore the content of this grid from a snapshot. Only the
+     * cells that differ from the snapshot are modified.
+     * @param snapshot the snapshot, taken from a grid of the same variant
+     */
+    public void restore(Snapshot snapshot) {
+        for (int i = 0; i < 81; i++)
+            setCellData(i, snapshot.cellData[i]);
+        this.snapshot = snapshot;
     }
 
     /**
@@ -1386,30 +2001,18 @@ public class Grid {
         if (!(o instanceof Grid))
             return false;
         Grid other = (Grid)o;
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell thisCell = this.getCell(x, y);
-                Cell otherCell = other.getCell(x, y);
-                if (thisCell.getValue() != otherCell.getValue())
-                    return false;
-                if (!thisCell.getPotentialValues().equals(otherCell.getPotentialValues()))
-                    return false;
-            }
+        if (this.zobristHash != other.zobristHash)
+            return false;
+        for (int i = 0; i < 81; i++) {
+            if (((this.cellData[i] ^ other.cellData[i]) & ~GIVEN_FLAG) != 0)
+                return false;
         }
         return true;
     }
 
     @Override
     public int hashCode() {
-        int result = 0;
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell cell = getCell(x, y);
-                result ^= cell.getValue();
-                result ^= cell.getPotentialValues().hashCode();
-            }
-        }
-        return result;
+        return (int)(zobristHash ^ (zobristHash >>> 32));
     }
 
 }
@@ -0,0 +1,104 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku;
+
+import java.util.*;
+
+/**
+ * Thread-confined pool of reusable grids.
+ * <p>
+ * The solver needs many short-lived working grids (backups, copies for
+ * the dynamic chains, brute-force analysis...). Creating a grid creates
+ * its 81 cells and all its regions, so instead the grids are acquired
+ * from the pool of the current thread and released to it once no longer
+ * needed:
+ * <pre>
+ * GridPool pool = GridPool.getInstance();
+ * Grid copy = pool.acquire(grid);
+ * try {
+ *     ...
+ * } finally {
+ *     pool.release(copy);
+ * }
+ * </pre>
+ * Each thread has its own pool, so no synchronization is needed. A grid
+ * that was acquired by a thread may be released by another thread, as long
+ * as it is no longer used by the first one.
+ * <p>
+ * A released grid must not be used anymore, and must have no pending
+ * {@link Grid#mark() mark}.
+ * <p>
+ * Only the grids of one variant are kept: when a grid of another variant
+ * is released, the idle grids of the previous variant are dropped, so that
+ * the memory kept by a thread does not grow with the number of variants.
+ */
+public final class GridPool {
+
+    /**
+     * Maximum number of idle grids kept.
+     */
+    private static final int MAX_IDLE = 16;
+
+    private static final ThreadLocal<GridPool> pools = new ThreadLocal<GridPool>() {
+        @Override
+        protected GridPool initialValue() {
+            return new GridPool();
+        }
+    };
+
+    private final ArrayDeque<Grid> idleGrids = new ArrayDeque<Grid>();
+    private Variant variant = null;
+
+    private GridPool() {
+    }
+
+    /**
+     * Get the pool of the current thread.
+     * @return the pool of the current thread
+     */
+    public static GridPool getInstance() {
+        return pools.get();
+    }
+
+    /**
+     * Acquire a grid of the given variant. The content of the returned
+     * grid is unspecified; it is typically overwritten using
+     * {@link Grid#copyTo(Grid)}.
+     * @param variant the variant of the grid
+     * @return a grid of the given variant
+     */
+    public Grid acquire(Variant variant) {
+        if (variant.equals(this.variant) && !idleGrids.isEmpty())
+            return idleGrids.pop();
+        return new Grid(variant);
+    }
+
+    /**
+     * Acquire a copy of the given grid.
+     * @param source the grid to copy
+     * @return a grid of the same variant, with the same content
+     */
+    public Grid acquire(Grid source) {
+        Grid result = acquire(source.getVariant());
+        source.copyTo(result);
+        return result;
+    }
+
+    /**
+     * Release a grid to this pool, so that it can be reused.
+     * @param grid the grid, that must not be used anymore
+     */
+    public void release(Grid grid) {
+        Variant variant = grid.getVariant();
+        if (!variant.equals(this.variant)) {
+            idleGrids.clear();
+            this.variant = variant;
+        }
+        if (idleGrids.size() < MAX_IDLE)
+            idleGrids.push(grid);
+    }
+
+}
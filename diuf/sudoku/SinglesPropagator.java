@@ -0,0 +1,222 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku;
+
+/**
+ * Allocation-free propagation of the naked and hidden singles.
+ * <p>
+ * This is meant for the callers that only need the resulting values, not
+ * the hints explaining them: brute-force searches, the generator, the
+ * validity checks... The singles are placed until none are left, or until
+ * a contradiction is found.
+ * <p>
+ * The kernel works on two arrays of 81 ints: the value of each cell
+ * (<tt>0</tt> if empty), and the potential values of each cell as a bit
+ * mask, as in {@link Cell#getPotentialValuesMask()}. The regions are taken
+ * from a {@link Topology}, so that all the variants are supported. The same
+ * operations are available directly on a {@link Grid}.
+ * <p>
+ * All the methods are static and thread-safe.
+ */
+public final class SinglesPropagator {
+
+    /**
+     * Returned by the propagation methods when a contradiction is found.
+     */
+    public static final int CONTRADICTION = -1;
+
+    private static final int ALL_VALUES = 0x3FE;
+
+    // Scratch arrays for the propagation on grids: values and potentials
+    private static final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[2][81];
+        }
+    };
+
+    private SinglesPropagator() {
+    }
+
+    /**
+     * Place all the naked and hidden singles, until there are none left.
+     * @param values the values of the cells
+     * @param potentials the potential values of the cells. The potential
+     * values of the cells that have a value must be their value.
+     * @param topology the regions
+     * @return the number of cells that have been given a value, or
+     * {@link #CONTRADICTION} if a cell has no potential value left, or a
+     * value cannot be placed in a region
+     */
+    public static int propagate(int[] values, int[] potentials, Topology topology) {
+        int count = 0;
+        int regionCount = topology.getRegionCount();
+        boolean isProgress = true;
+        while (isProgress) {
+            isProgress = false;
+            // Naked singles
+            for (int cell = 0; cell < 81; cell++) {
+                if (values[cell] == 0) {
+                    int mask = potentials[cell];
+                    if (mask == 0)
+                        return CONTRADICTION;
+                    if ((mask & (mask - 1)) == 0) {
+                        if (!assign(values, potentials, topology, cell,
+                                Integer.numberOfTrailingZeros(mask)))
+                            return CONTRADICTION;
+                        count++;
+                        isProgress = true;
+                    }
+                }
+            }
+            // Hidden singles, and values that cannot be placed in a region
+            for (int region = 0; region < regionCount; region++) {
+                int[] cells = topology.getRegionCells(region);
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int cell : cells) {
+                    if (values[cell] != 0) {
+                        placed |= 1 << values[cell];
+                    } else {
+                        int mask = potentials[cell];
+                        twice |= once & mask;
+                        once |= mask;
+                    }
+                }
+                if ((once | placed) != ALL_VALUES)
+                    return CONTRADICTION;
+                int hidden = once & ~twice & ~placed;
+                for (; hidden != 0; hidden &= hidden - 1) {
+                    int bit = hidden & -hidden;
+                    int target = -1;
+                    for (int cell : cells) {
+                        if (values[cell] == 0 && (potentials[cell] & bit) != 0) {
+                            target = cell;
+                            break;
+                        }
+                    }
+                    if (target < 0 || !assign(values, potentials, topology, target,
+                            Integer.numberOfTrailingZeros(bit)))
+                        return CONTRADICTION;
+                    count++;
+                    isProgress = true;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Set the value of a cell and remove it from the potential values of
+     * its peers.
+     * @return <tt>false</tt> if a peer has the same value, or has no
+     * potential value left
+     */
+    public static boolean assign(int[] values, int[] potentials, Topology topology,
+            int cell, int value) {
+        int bit = 1 << value;
+        values[cell] = value;
+        potentials[cell] = bit;
+        for (int peer : topology.getPeers(cell)) {
+            int peerValue = values[peer];
+            if (peerValue == 0) {
+                int mask = potentials[peer] & ~bit;
+                if (mask == 0)
+                    return false;
+                potentials[peer] = mask;
+            } else if (peerValue == value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Place all the naked and hidden singles of a grid, until there are
+     * none left. The current potential values of the grid are used.
+     * <p>
+     * A value that is already twice in a region is a contradiction. If a
+     * contradiction is found, the grid is left unchanged.
+     * @param grid the grid
+     * @return the number of cells that have been given a value, or
+     * {@link #CONTRADICTION}
+     */
+    public static int propagate(Grid grid) {
+        int[] data = grid.cellData;
+        int[][] state = scratch.get();
+        int[] values = state[0];
+        int[] potentials = state[1];
+        for (int cell = 0; cell < 81; cell++) {
+            int value = (data[cell] & Grid.VALUE_MASK) >>> Grid.VALUE_SHIFT;
+            values[cell] = value;
+            potentials[cell] = (value != 0 ? 1 << value : data[cell] & Grid.POTENTIALS_MASK);
+        }
+        Topology topology = grid.getTopology();
+        // The same value twice in a region
+        for (int region = 0; region < topology.getRegionCount(); region++) {
+            int placed = 0;
+            for (int cell : topology.getRegionCells(region)) {
+                int bit = 1 << values[cell];
+                if ((placed & bit) != 0 && bit != 1)
+                    return CONTRADICTION;
+                placed |= bit;
+            }
+        }
+        int count = propagate(values, potentials, topology);
+        if (count > 0) {
+            // Write back the new values, and the new potential values of the empty cells
+            for (int cell = 0; cell < 81; cell++) {
+                int cellData = data[cell];
+                int value = values[cell];
+                if ((cellData & Grid.VALUE_MASK) != 0)
+                    continue;
+                if (value != 0)
+                    grid.setCellData(cell, (cellData & Grid.GIVEN_FLAG) | (value << Grid.VALUE_SHIFT));
+                else
+                    grid.setCellData(cell, (cellData & ~Grid.POTENTIALS_MASK) | potentials[cell]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rebuild the potential values of a grid: each empty cell gets all the
+     * values that are not the value of one of its peers, and the cells
+     * that have a value get no potential value.
+     * @param grid the grid
+     */
+    public static void rebuildPotentials(Grid grid) {
+        updatePotentials(grid, ALL_VALUES);
+    }
+
+    /**
+     * Remove from the potential values of the empty cells of a grid the
+     * values of their peers, and clear the potential values of the cells
+     * that have a value.
+     * @param grid the grid
+     */
+    public static void cancelPotentials(Grid grid) {
+        updatePotentials(grid, 0);
+    }
+
+    private static void updatePotentials(Grid grid, int base) {
+        int[] data = grid.cellData;
+        Topology topology = grid.getTopology();
+        for (int cell = 0; cell < 81; cell++) {
+            int cellData = data[cell];
+            if ((cellData & Grid.VALUE_MASK) != 0) {
+                grid.setCellData(cell, cellData & ~Grid.POTENTIALS_MASK);
+            } else {
+                int mask = base | (cellData & Grid.POTENTIALS_MASK);
+                for (int peer : topology.getPeers(cell))
+                    mask &= ~(1 << ((data[peer] & Grid.VALUE_MASK) >>> Grid.VALUE_SHIFT));
+                grid.setCellData(cell, (cellData & ~Grid.POTENTIALS_MASK) | (mask & ALL_VALUES));
+            }
+        }
+    }
+
+}
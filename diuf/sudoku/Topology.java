@@ -0,0 +1,195 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku;
+
+import java.util.*;
+
+/**
+ * Precomputed index tables of a grid variant.
+ * <p>
+ * A topology holds, for a given set of regions (vanilla, diagonals,
+ * disjoint groups, windoku, custom...):
+ * <ul>
+ * <li>The cells of each region
+ * <li>The regions of each cell
+ * <li>The peers of each cell, that is, the cells sharing at least one
+ * region with it, both as an array and as a 81-bit mask
+ * </ul>
+ * Cells are identified by their index (<tt>y * 9 + x</tt>). Regions are
+ * identified by their index in the order of {@link Grid#getRegionTypes()},
+ * and then by region number; see {@link Grid#getRegion(int)}.
+ * <p>
+ * Topologies are immutable and shared by all the grids of the same variant.
+ * The returned arrays must not be modified.
+ */
+public final class Topology {
+
+    private static final Map<String, Topology> topologies = new HashMap<String, Topology>();
+
+    private final int[][] regionCells;
+    private final int[][] cellRegions;
+    private final int[][] cellRegionPositions;
+    private final int[][] cellPeers;
+    private final long[] peerMasksLow = new long[81];
+    private final long[] peerMasksHigh = new long[81];
+
+    private Topology(int[][] regionCells) {
+        this.regionCells = regionCells;
+        // Regions of each cell
+        int[] counts = new int[81];
+        for (int[] cells : regionCells) {
+            for (int cell : cells)
+                counts[cell]++;
+        }
+        this.cellRegions = new int[81][];
+        this.cellRegionPositions = new int[81][];
+        for (int cell = 0; cell < 81; cell++) {
+            cellRegions[cell] = new int[counts[cell]];
+            cellRegionPositions[cell] = new int[counts[cell]];
+        }
+        Arrays.fill(counts, 0);
+        for (int region = 0; region < regionCells.length; region++) {
+            for (int pos = 0; pos < 9; pos++) {
+                int cell = regionCells[region][pos];
+                cellRegionPositions[cell][counts[cell]] = pos;
+                cellRegions[cell][counts[cell]++] = region;
+            }
+        }
+        // Peers of each cell, in the order of the regions of the cell
+        this.cellPeers = new int[81][];
+        int[] peers = new int[81];
+        for (int cell = 0; cell < 81; cell++) {
+            int count = 0;
+            for (int region : cellRegions[cell]) {
+                for (int other : regionCells[region]) {
+                    if (other != cell && !isPeer(cell, other)) {
+                        if (other < 64)
+                            peerMasksLow[cell] |= 1L << other;
+                        else
+                            peerMasksHigh[cell] |= 1L << (other - 64);
+                        peers[count++] = other;
+                    }
+                }
+            }
+            cellPeers[cell] = Arrays.copyOf(peers, count);
+        }
+    }
+
+    /**
+     * Get the topology of the regions of the given grid. Topologies are
+     * cached, so the tables are built only once per variant.
+     * @param grid the grid
+     * @return the topology of the given grid's regions
+     */
+    static Topology getInstance(Grid grid) {
+        List<int[]> regions = new ArrayList<int[]>();
+        StringBuilder key = new StringBuilder();
+        for (int regionType : grid.getRegionTypeIds()) {
+            Grid.Region[] typeRegions = grid.getRegions(regionType);
+            int regionmax = grid.getRegionMax(regionType);
+            for (int i = 0; i < regionmax; i++) {
+                if (typeRegions[i] == null)
+                    continue;
+                int[] cells = new int[9];
+                for (int j = 0; j < 9; j++) {
+                    cells[j] = typeRegions[i].getCell(j).getIndex();
+                    key.append((char)cells[j]);
+                }
+                regions.add(cells);
+            }
+        }
+        synchronized (topologies) {
+            Topology result = topologies.get(key.toString());
+            if (result == null) {
+                result = new Topology(regions.toArray(new int[regions.size()][]));
+                topologies.put(key.toString(), result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Get the number of regions.
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return regionCells.length;
+    }
+
+    /**
+     * Get the indexes of the cells of a region, in the order of
+     * {@link Grid.Region#getCell(int)}.
+     * @param region the index of the region
+     * @return the indexes of the 9 cells of the region
+     */
+    public int[] getRegionCells(int region) {
+        return regionCells[region];
+    }
+
+    /**
+     * Get the indexes of the regions a cell belongs to.
+     * @param cell the index of the cell
+     * @return the indexes of the regions of the cell
+     */
+    public int[] getCellRegions(int cell) {
+        return cellRegions[cell];
+    }
+
+    /**
+     * Get the positions of a cell within the regions it belongs to, in the
+     * order of {@link #getCellRegions(int)}. A position is the index of the
+     * cell in {@link #getRegionCells(int)}.
+     * @param cell the index of the cell
+     * @return the positions of the cell within its regions
+     */
+    public int[] getCellRegionPositions(int cell) {
+        return cellRegionPositions[cell];
+    }
+
+    /**
+     * Get the indexes of the peers of a cell. The order is the one
+     * of {@link Cell#getHouseCells()}.
+     * @param cell the index of the cell
+     * @return the indexes of the peers of the cell
+     */
+    public int[] getPeers(int cell) {
+        return cellPeers[cell];
+    }
+
+    /**
+     * Get the peers of cells 0 to 63 of a cell, as a bit mask.
+     * @param cell the index of the cell
+     * @return the mask of the peers with an index below 64
+     */
+    public long getPeerMaskLow(int cell) {
+        return peerMasksLow[cell];
+    }
+
+    /**
+     * Get the peers of cells 64 to 80 of a cell, as a bit mask.
+     * Bit 0 corresponds to cell 64.
+     * @param cell the index of the cell
+     * @return the mask of the peers with an index of 64 or more
+     */
+    public long getPeerMaskHigh(int cell) {
+        return peerMasksHigh[cell];
+    }
+
+    /**
+     * Test whether two cells share at least one region.
+     * A cell is not a peer of itself.
+     * @param cell the index of the first cell
+     * @param other the index of the other cell
+     * @return whether the two cells are peers
+     */
+    public boolean isPeer(int cell, int other) {
+        if (other < 64)
+            return (peerMasksLow[cell] & (1L << other)) != 0;
+        else
+            return (peerMasksHigh[cell] & (1L << (other - 64))) != 0;
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku;
+
+/**
+ * Immutable description of a sudoku variant: which regions, in addition to
+ * the rows and columns, a grid has.
+ * <p>
+ * A variant holds:
+ * <ul>
+ * <li>Whether the blocks are used (they are not for latin squares)
+ * <li>Whether the diagonal (/) and the antidiagonal (\) are used
+ * <li>Whether the disjoint groups and the windoku regions are used
+ * <li>The layout of the custom (jigsaw or extra) regions, if any
+ * </ul>
+ * Grids created with {@link Grid#Grid(Variant)} do not read the
+ * {@link Settings}, so that grids of different variants can be used at
+ * the same time, for instance by concurrent workers. {@link #fromSettings()}
+ * is the adapter for the variant selected in the settings.
+ */
+public final class Variant {
+
+    /**
+     * The vanilla sudoku: rows, columns and 3x3 blocks.
+     */
+    public static final Variant VANILLA = new Variant(true, false, false, true, true,
+            false, false, false, null, 9);
+
+    private final boolean isRC33;
+    private final boolean isLatinSquare;
+    private final boolean isDiagonals;
+    private final boolean isXDiagonal;
+    private final boolean isXAntiDiagonal;
+    private final boolean isDisjointGroups;
+    private final boolean isWindoku;
+    private final boolean isCustom;
+    private final String custom;
+    private final int customCount;
+
+    // Shared by all the grids of this variant, computed on first use
+    private volatile Topology topology = null;
+
+    /**
+     * Create a new variant.
+     * @param isLatinSquare whether the blocks are not used
+     * @param isXDiagonal whether the diagonal (/) is used
+     * @param isXAntiDiagonal whether the antidiagonal (\) is used
+     * @param isDisjointGroups whether the disjoint groups are used
+     * @param isWindoku whether the windoku regions are used
+     * @param custom the layout of the custom regions: 81 characters, the
+     * letters <tt>A</tt> to <tt>I</tt> giving the region of each cell, and
+     * <tt>.</tt> for the cells that are in no custom region. <tt>null</tt>
+     * if there are no custom regions.
+     */
+    public Variant(boolean isLatinSquare, boolean isXDiagonal, boolean isXAntiDiagonal,
+            boolean isDisjointGroups, boolean isWindoku, String custom) {
+        this(true, isLatinSquare, isXDiagonal || isXAntiDiagonal, isXDiagonal, isXAntiDiagonal,
+                isDisjointGroups, isWindoku, custom != null, custom, getCustomCount(custom, 9));
+    }
+
+    Variant(boolean isRC33, boolean isLatinSquare, boolean isDiagonals,
+            boolean isXDiagonal, boolean isXAntiDiagonal, boolean isDisjointGroups,
+            boolean isWindoku, boolean isCustom, String custom, int customCount) {
+        this.isRC33 = isRC33;
+        this.isLatinSquare = isLatinSquare;
+        this.isDiagonals = isDiagonals;
+        this.isXDiagonal = isXDiagonal;
+        this.isXAntiDiagonal = isXAntiDiagonal;
+        this.isDisjointGroups = isDisjointGroups;
+        this.isWindoku = isWindoku;
+        this.isCustom = isCustom;
+        this.custom = custom;
+        this.customCount = customCount;
+    }
+
+    /**
+     * Get the variant currently selected in the {@link Settings}.
+     * @return the variant of the settings
+     */
+    public static Variant fromSettings() {
+        Settings settings = Settings.getInstance();
+        String custom = (settings.isCustom() ? settings.getCustom() : null);
+        return new Variant(settings.isRC33(), settings.isLatinSquare(), settings.isDiagonals(),
+                settings.isXDiagonal(), settings.isXAntiDiagonal(), settings.isDisjointGroups(),
+                settings.isWindoku(), settings.isCustom(), custom,
+                getCustomCount(custom, settings.getCount()));
+    }
+
+    /**
+     * Get the number of custom regions of a layout: the highest region
+     * letter that is used.
+     */
+    static int getCustomCount(String custom, int defaultCount) {
+        if (custom == null)
+            return defaultCount;
+        int count = 0;
+        for (int c = 0; c < custom.length() && c < 81; c++) {
+            int region = custom.charAt(c) - '@';
+            if (region > count && region <= 9)
+                count = region;
+        }
+        return count;
+    }
+
+    public boolean isRC33() { return this.isRC33; }
+    public boolean isLatinSquare() { return this.isLatinSquare; }
+    public boolean isDiagonals() { return this.isDiagonals; }
+    public boolean isXDiagonal() { return this.isXDiagonal; }
+    public boolean isXAntiDiagonal() { return this.isXAntiDiagonal; }
+    public boolean isDisjointGroups() { return this.isDisjointGroups; }
+    public boolean isWindoku() { return this.isWindoku; }
+    public boolean isCustom() { return this.isCustom; }
+
+    /**
+     * Test whether this variant is a vanilla sudoku: rows, columns and
+     * blocks only.
+     * @return whether this variant is a vanilla sudoku
+     */
+    public boolean isVanilla() {
+        return !isLatinSquare && !isDiagonals && !isDisjointGroups && !isWindoku && !isCustom;
+    }
+
+    /**
+     * Get the layout of the custom regions.
+     * @return the layout of the custom regions, or <tt>null</tt>
+     */
+    public String getCustom() {
+        return this.custom;
+    }
+
+    /**
+     * Get the number of custom regions.
+     * @return the number of custom regions
+     */
+    public int getCustomCount() {
+        return this.customCount;
+    }
+
+    /**
+     * Test whether this variant has the given properties.
+     */
+    boolean matches(boolean isRC33, boolean isLatinSquare, boolean isDiagonals,
+            boolean isXDiagonal, boolean isXAntiDiagonal, boolean isDisjointGroups,
+            boolean isWindoku, boolean isCustom, String custom, int customCount) {
+        return this.isRC33 == isRC33 && this.isLatinSquare == isLatinSquare
+                && this.isDiagonals == isDiagonals && this.isXDiagonal == isXDiagonal
+                && this.isXAntiDiagonal == isXAntiDiagonal
+                && this.isDisjointGroups == isDisjointGroups && this.isWindoku == isWindoku
+                && this.isCustom == isCustom && this.customCount == customCount
+                && (this.custom == null ? custom == null : this.custom.equals(custom));
+    }
+
+    Topology getTopology() {
+        return this.topology;
+    }
+
+    void setTopology(Topology topology) {
+        this.topology = topology;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof Variant))
+            return false;
+        Variant other = (Variant)o;
+        return matches(other.isRC33, other.isLatinSquare, other.isDiagonals, other.isXDiagonal,
+                other.isXAntiDiagonal, other.isDisjointGroups, other.isWindoku, other.isCustom,
+                other.custom, other.customCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (isLatinSquare ? 1 : 0) | (isDiagonals ? 2 : 0) | (isXDiagonal ? 4 : 0)
+                | (isXAntiDiagonal ? 8 : 0) | (isDisjointGroups ? 16 : 0) | (isWindoku ? 32 : 0)
+                | (isCustom ? 64 : 0) | (isRC33 ? 128 : 0);
+        result = result * 31 + customCount;
+        if (custom != null)
+            result = result * 31 + custom.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(isLatinSquare ? "latin square" : "sudoku");
+        if (isDiagonals && isXDiagonal)
+            result.append(", diagonal(/)");
+        if (isDiagonals && isXAntiDiagonal)
+            result.append(", antidiagonal(\\)");
+        if (isDisjointGroups)
+            result.append(", disjointgroups");
+        if (isWindoku)
+            result.append(", windoku");
+        if (isCustom)
+            result.append(", custom ").append(custom);
+        return result.toString();
+    }
+
+}
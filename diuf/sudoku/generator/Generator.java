@@ -14,7 +14,11 @@ import diuf.sudoku.solver.checks.*;
 
 public class Generator {
 
+    // Difficulty of a naked single, the hardest of the singles
+    private static final double SINGLES_DIFFICULTY = 2.3;
+
     private final BruteForceAnalysis analyser = new BruteForceAnalysis(true);
+    private final UniquenessChecker checker = new UniquenessChecker();
     private boolean isInterrupted = false;
 
     private final static String wco="ccccccccccooocoooccooocoooccooocooocccccccccccooocoooccooocoooccooocooocccccccccc";
@@ -59,12 +63,21 @@ public class Generator {
             if ( grid.isWindoku() && wco!=null && Settings.getInstance().isWindowsClosed() && cnt == ((3-1)+(3-1))*9 ) { continue; }
             if ( grid.isWindoku() && wco!=null && Settings.getInstance().isWindowsOpen() && cnt == (9-(3-1)-(3-1))*9 ) { continue; }
 
+            // The singles are found without the hints of the solver
+            if (minDifficulty > SINGLES_DIFFICULTY && isSolvedBySingles(grid))
+                continue;
+
             // Analyse difficulty
-            Grid copy = new Grid();
-            grid.copyTo(copy);
-            Solver solver = new Solver(copy);
-            solver.rebuildPotentialValues();
-            double difficulty = solver.analyseDifficulty(minDifficulty, maxDifficulty);
+            GridPool pool = GridPool.getInstance();
+            Grid copy = pool.acquire(grid);
+            double difficulty;
+            try {
+                Solver solver = new Solver(copy);
+                solver.rebuildPotentialValues();
+                difficulty = solver.analyseDifficulty(minDifficulty, maxDifficulty);
+            } finally {
+                pool.release(copy);
+            }
             if (difficulty >= minDifficulty && difficulty <= maxDifficulty) {
                 grid.fixGivens();
                 return grid;
@@ -75,6 +88,35 @@ public class Generator {
         }
     }
 
+    /**
+     * Get whether the singles alone solve a grid. The rating of such a grid
+     * is then at most the difficulty of a naked single: the singles remain
+     * whatever the solver applies, and the solver takes a single, or an
+     * easier hint, at each step.
+     * @param grid the grid, which is not modified
+     * @return whether the singles solve the grid, and are enabled
+     */
+    private boolean isSolvedBySingles(Grid grid) {
+        EnumSet<SolvingTechnique> techniques = Settings.getInstance().getTechniques();
+        if (!techniques.contains(SolvingTechnique.HiddenSingle)
+                || !techniques.contains(SolvingTechnique.NakedSingle))
+            return false;
+        GridPool pool = GridPool.getInstance();
+        Grid copy = pool.acquire(grid);
+        try {
+            SinglesPropagator.rebuildPotentials(copy);
+            if (SinglesPropagator.propagate(copy) == SinglesPropagator.CONTRADICTION)
+                return false;
+            for (int i = 0; i < 81; i++) {
+                if (copy.getCellValue(i % 9, i / 9) == 0)
+                    return false;
+            }
+            return true;
+        } finally {
+            pool.release(copy);
+        }
+    }
+
     /**
      * Generate a random grid with the given symmetry
      * @param rnd the random gene
@@ -93,9 +135,28 @@ public class Generator {
             return null;
         }
 //a     assert result;
-        Grid solution = new Grid();
-        grid.copyTo(solution);
+        GridPool pool = GridPool.getInstance();
+        Grid solution = pool.acquire(grid);
+        try {
+            removeClues(grid, solution, rnd, symmetry);
+        } finally {
+            pool.release(solution);
+        }
+        if (isInterrupted) {
+            return null;
+        }
+        return grid;
+    }
 
+    /**
+     * Randomly remove clues of a grid, with the given symmetry, as long as
+     * it has a unique solution.
+     * @param grid the grid
+     * @param solution the solution of the grid
+     * @param rnd the random generator
+     * @param symmetry the symmetry type
+     */
+    private void removeClues(Grid grid, Grid solution, Random rnd, Symmetry symmetry) {
         if ( grid.isWindoku() && wco!=null && Settings.getInstance().isWindowsClosed() ) {
             for (int i = 0; i < 81; i++) {
                 if ( wco.charAt(i)=='c' ) {
@@ -111,6 +172,9 @@ public class Generator {
             }
         }
 
+        // The solution is the witness of the uniqueness checks
+        checker.reset(grid, solution);
+
         // Build running indexes
         int[] indexes = new int[81];
         for (int i = 0; i < indexes.length; i++)
@@ -151,8 +215,7 @@ public class Generator {
                 }
                 if (cellRemoved) {
                     // Test if the Sudoku still has an unique solution
-                    int state = analyser.getCountSolutions(grid);
-                    if (state == 1) {
+                    if (checker.removeClues(points)) {
                         // Cells successfully removed: still a unique solution
                         isSuccess = true;
 //                      successes += 1;
@@ -172,10 +235,6 @@ public class Generator {
                 }
             } while (!isSuccess && countDown > 0);
         }
-        if (isInterrupted) {
-            return null;
-        }
-        return grid;
     }
 
     public void interrupt() {
@@ -49,7 +49,7 @@ public class SudokuExplainer {
     private List<Hint> filteredHints = null; // All hints (filtered)
     private boolean isFiltered = true;
     private List<Hint> selectedHints = new ArrayList<Hint>(); // Currently selected hint
-    private Stack<Grid> gridStack = new Stack<Grid>(); // Stack for undo
+    private Stack<Grid.Snapshot> gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
     private Stack<String> pathStack = new Stack<String>(); // Stack for solution path
 
     // Cache for filter
@@ -60,7 +60,7 @@ public class SudokuExplainer {
     public SudokuExplainer() {
         grid = new Grid();
         savedgrid = new Grid();
-        gridStack = new Stack<Grid>(); // Stack for undo
+        gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
         pathStack = new Stack<String>(); // Stack for solution path
         solver = new Solver(grid);
         solver.rebuildPotentialValues();
@@ -370,7 +370,7 @@ public class SudokuExplainer {
     public void clearGrid() {
         grid = new Grid();
         savedgrid = new Grid();
-        gridStack = new Stack<Grid>(); // Stack for undo
+        gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
         pathStack = new Stack<String>(); // Stack for solution path
         solver = new Solver(grid);
         solver.rebuildPotentialValues();
@@ -413,7 +413,7 @@ public class SudokuExplainer {
             if ( solver.isSolved() ||
                 JOptionPane.showConfirmDialog(frame, "Restart, Are you sure?", "Restart", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION ) {
                 savedgrid.copyTo(grid);
-                gridStack = new Stack<Grid>(); // Stack for undo
+                gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
                 pathStack = new Stack<String>(); // Stack for solution path
                 solver = new Solver(grid);
             //  solver.rebuildPotentialValues();
@@ -428,7 +428,7 @@ public class SudokuExplainer {
 
     public void setGrid(Grid grid) {
         this.grid = grid;
-        gridStack = new Stack<Grid>(); // Stack for undo
+        gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
         pathStack = new Stack<String>(); // Stack for solution path
         solver = new Solver(grid);
         solver.rebuildPotentialValues();
@@ -520,10 +520,10 @@ public class SudokuExplainer {
             /*
              * Trick: gatherHints will get all the hints it can find, one after
              * the other, sorted by difficulty. It will call add() for every hint.
-             * To get only the first hint, we throw an InterruptedException after the
-             * first produced hint that was not filtered.
+             * To get only the first hint, we ask to stop after the first produced
+             * hint that was not filtered.
              */
-            public void add(Hint hint) throws InterruptedException {
+            public boolean add(Hint hint) {
                 if (!buffer.contains(hint)) {
                     buffer.add(hint);
                     boolean isNew = (buffer.size() > unfilteredHints.size());
@@ -531,10 +531,11 @@ public class SudokuExplainer {
                         unfilteredHints.add(hint); // This hint is new for the unfiltered list
                         if (isWorth(hint)) {
                             newHint.setValue(hint);
-                            throw new InterruptedException();
+                            return true;
                         }
                     }
                 }
+                return false;
             }
         }, frame);
         selectedHints.clear();
@@ -686,15 +687,12 @@ public class SudokuExplainer {
     }
 
     private void pushGrid() {
-        Grid copy = new Grid();
-        this.grid.copyTo(copy);
-        this.gridStack.push(copy);
+        this.gridStack.push(this.grid.getSnapshot());
     }
 
     private void popGrid() {
         if (!this.gridStack.isEmpty()) {
-            Grid prev = this.gridStack.pop();
-            prev.copyTo(this.grid);
+            this.grid.restore(this.gridStack.pop());
         //  this.solver.rebuildPotentialValues();
             clearHints();
             repaintAll();
@@ -754,7 +752,7 @@ public class SudokuExplainer {
         ErrorMessage message = SudokuIO.loadFromClipboard(grid);
         if (message == null || !message.isFatal()) {
             solver.rebuildPotentialValues();
-            gridStack = new Stack<Grid>(); // Stack for undo
+            gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
             pathStack = new Stack<String>(); // Stack for solution path
             pushSudoku(grid);
             grid.copyTo(savedgrid);
@@ -786,7 +784,7 @@ public class SudokuExplainer {
         ErrorMessage message = SudokuIO.loadFromFile(grid, file);
         if (message == null || !message.isFatal()) {
             solver.rebuildPotentialValues();
-            gridStack = new Stack<Grid>(); // Stack for undo
+            gridStack = new Stack<Grid.Snapshot>(); // Stack for undo
             pathStack = new Stack<String>(); // Stack for solution path
             pushSudoku(grid);
             grid.copyTo(savedgrid);
@@ -644,7 +644,7 @@ public class SudokuIO {
         int crd = 1;
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
-                int n = grid.getCell(x, y).getPotentialValues().cardinality();
+                int n = grid.getCell(x, y).getPotentialValuesCount();
                 if ( n > crd ) { crd = n; }
             }
         }
@@ -0,0 +1,169 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Limits on the work done to rate a puzzle.
+ * <p>
+ * A budget limits the wall time, the number of chaining steps, and the
+ * nesting level of the forcing chains. It is checked cooperatively by the
+ * chaining producers: one step is one potential processed by the search
+ * for the implications of an assumption, and the level is checked before
+ * a producer searches for hints. When a limit is exceeded, a
+ * {@link BudgetExceededException} is thrown, and the rating is stopped.
+ * <p>
+ * The producers check the budget of the current thread, given by
+ * {@link #getCurrent()}. The {@link Solver} sets it for the duration of
+ * a rating, and restarts it for each puzzle. A budget can be forked for
+ * a search made by another thread. The fork counts its own steps, which
+ * are charged to the budget only if the result of the search is used, so
+ * that the steps counted do not depend on the searches made concurrently.
+ * The fork can also be cancelled, so that a search whose result is not
+ * needed anymore stops at its next step with a
+ * {@link CancellationException}.
+ */
+public class Budget {
+
+    /**
+     * The limits of a budget.
+     */
+    public enum Limit {
+        TIME, STEPS, LEVEL
+    }
+
+    // Number of steps between two checks of the time
+    private static final int TIME_CHECK_STEPS = 1024;
+
+    // The budget checked by the producers running in each thread
+    private static final ThreadLocal<Budget> current = new ThreadLocal<Budget>();
+
+    private final long timeout;
+    private final long maxSteps; // Long.MAX_VALUE for no limit
+    private final int maxLevel;
+
+    private final AtomicLong steps = new AtomicLong();
+    private volatile long deadline = Long.MAX_VALUE;
+    private volatile Limit exceeded = null;
+    private volatile boolean isCancelled = false;
+
+    /**
+     * Create a new budget.
+     * @param timeout the maximal time to rate a puzzle, in milliseconds,
+     * or <tt>0</tt> for no limit
+     * @param maxSteps the maximal number of chaining steps to rate a
+     * puzzle, or <tt>0</tt> for no limit
+     * @param maxLevel the maximal nesting level of the forcing chains,
+     * from <tt>0</tt> to <tt>5</tt>, or a negative value for no limit
+     */
+    public Budget(long timeout, long maxSteps, int maxLevel) {
+        this.timeout = timeout;
+        this.maxSteps = (maxSteps > 0 ? maxSteps : Long.MAX_VALUE);
+        this.maxLevel = maxLevel;
+    }
+
+    private Budget(Budget parent) {
+        this.timeout = parent.timeout;
+        if (parent.maxSteps == Long.MAX_VALUE)
+            this.maxSteps = Long.MAX_VALUE;
+        else
+            this.maxSteps = parent.maxSteps - parent.steps.get();
+        this.maxLevel = parent.maxLevel;
+        this.deadline = parent.deadline;
+    }
+
+    /**
+     * Get the budget checked by the producers running in the current thread.
+     * @return the budget of the current thread, or <tt>null</tt> if there
+     * is no limit
+     */
+    public static Budget getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Set the budget checked by the producers running in the current thread.
+     * @param budget the budget, or <tt>null</tt> for no limit
+     */
+    public static void setCurrent(Budget budget) {
+        current.set(budget);
+    }
+
+    /**
+     * Start the rating of a new puzzle: the time and the steps are counted
+     * from zero again.
+     */
+    void start() {
+        steps.set(0);
+        deadline = (timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE);
+        exceeded = null;
+    }
+
+    /**
+     * Create a budget for a search made by another thread. The fork has
+     * the deadline and the level of this budget, and the steps left to it.
+     * Its steps are not counted by this budget until they are
+     * {@link #charge(Budget) charged}. Cancelling the fork does not cancel
+     * this budget.
+     * @return the fork
+     */
+    Budget fork() {
+        return new Budget(this);
+    }
+
+    /**
+     * Count the steps of a fork, whose search is used as if it had been
+     * made by the current thread.
+     * @param fork the fork
+     * @throws BudgetExceededException if the steps are exhausted
+     */
+    void charge(Budget fork) {
+        if (steps.addAndGet(fork.steps.get()) > maxSteps)
+            exceed(Limit.STEPS);
+    }
+
+    /**
+     * Cancel the searches using this budget: they stop at their next step.
+     */
+    void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * Count one chaining step.
+     * @throws BudgetExceededException if the time or the steps are exhausted
+     * @throws CancellationException if this budget has been cancelled
+     */
+    public void step() {
+        if (isCancelled)
+            throw new CancellationException();
+        if (exceeded != null)
+            throw new BudgetExceededException(exceeded);
+        long count = steps.incrementAndGet();
+        if (count > maxSteps)
+            exceed(Limit.STEPS);
+        if (count % TIME_CHECK_STEPS == 0 && System.currentTimeMillis() > deadline)
+            exceed(Limit.TIME);
+    }
+
+    /**
+     * Check that the forcing chains of a given nesting level can be used.
+     * @param level the nesting level
+     * @throws BudgetExceededException if the level is above the maximal one
+     */
+    public void checkLevel(int level) {
+        if (maxLevel >= 0 && level > maxLevel)
+            throw new BudgetExceededException(Limit.LEVEL);
+    }
+
+    private void exceed(Limit limit) {
+        exceeded = limit;
+        throw new BudgetExceededException(limit);
+    }
+
+}
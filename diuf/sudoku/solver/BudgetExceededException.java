@@ -0,0 +1,33 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver;
+
+/**
+ * Thrown by a {@link Budget} when one of its limits is exceeded.
+ * <p>
+ * The hint producers let this exception go through, after undoing their
+ * changes to the grid, and the {@link Solver} stops the rating.
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 4178360271836109341L;
+
+    private final Budget.Limit limit;
+
+    public BudgetExceededException(Budget.Limit limit) {
+        super("Budget exceeded: " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * Get the limit that has been exceeded.
+     * @return the limit that has been exceeded
+     */
+    public Budget.Limit getLimit() {
+        return this.limit;
+    }
+
+}
@@ -7,17 +7,20 @@ package diuf.sudoku.solver;
 
 /**
  * Accumulator for hints.
- * The accumulator can choose to throw an <tt>InterruptedException</tt>
- * whenever it has gathered enough hints.
+ * The accumulator tells the hint producers when it has gathered enough
+ * hints, by returning <tt>true</tt> from {@link #add(Hint)}. The producers
+ * must then stop searching and return.
  */
 public interface HintsAccumulator {
 
     /**
      * Add an hint to this accumulator
      * @param hint the hint to add
-     * @throws InterruptedException if this accumulator want to
-     * stop the gathering of hints. You must not catch this exception.
+     * @return <tt>true</tt> if this accumulator wants to stop the
+     * gathering of hints
+     * @throws InterruptedException if the current thread has been
+     * interrupted. This is not used to stop the gathering of hints.
      */
-    public void add(Hint hint) throws InterruptedException;
+    public boolean add(Hint hint) throws InterruptedException;
 
 }
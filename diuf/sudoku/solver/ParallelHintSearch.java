@@ -0,0 +1,199 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import diuf.sudoku.*;
+
+/**
+ * Concurrent search for the first hint of a list of hint producers.
+ * <p>
+ * Each producer runs on its own copy of the grid, in a pool of worker
+ * threads, and gets its own {@link SingleHintAccumulator}. The result is
+ * the hint of the first producer of the list that has one, exactly as if
+ * the producers were run one after the other: the rating does not depend
+ * on the order in which the producers finish. Likewise, only the chaining
+ * steps of the producers up to this one are charged to the budget. As soon as this hint is
+ * known, the producers that come after it in the list are cancelled:
+ * those that have not started yet are skipped, and the running ones stop
+ * at their next step. The threads are not interrupted; each producer runs
+ * with a fork of the {@link Budget} of the calling thread, which is the one
+ * that is cancelled, and the chaining producers check it at each step.
+ * The result of a cancelled producer is ignored.
+ * <p>
+ * The search returns without waiting for the cancelled producers. A
+ * producer is however never run by two threads at the same time: its
+ * previous search is waited for when it is used again. The copy of the
+ * grid of each producer is kept from one search to the next, so that the
+ * producers can still tell which regions have changed.
+ * <p>
+ * Instances are not thread-safe; they belong to a {@link Solver}.
+ */
+class ParallelHintSearch {
+
+    private final ExecutorService executor;
+    private final Map<HintProducer, Grid> grids = new IdentityHashMap<HintProducer, Grid>();
+    private final Map<HintProducer, Task> running = new IdentityHashMap<HintProducer, Task>();
+
+    /**
+     * Create a new search using the given number of worker threads.
+     */
+    ParallelHintSearch(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "solver-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Get the first hint of the given producers. If one of the producers
+     * before it fails, with an exception or an error, the failure is
+     * thrown again by this method, as if the producer had been run by the
+     * calling thread.
+     * @param grid the grid, which is not modified
+     * @param producers the producers, in their order of precedence
+     * @return the hint of the first producer that has one, or
+     * <tt>null</tt> if none of them has a hint
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    Hint getFirstHint(Grid grid, List<? extends HintProducer> producers)
+            throws InterruptedException {
+        Budget budget = Budget.getCurrent();
+        List<Task> tasks = new ArrayList<Task>(producers.size());
+        try {
+            for (HintProducer producer : producers) {
+                waitIdle(producer);
+                Task task = new Task(producer, getGrid(producer, grid),
+                        budget != null ? budget.fork() : new Budget(0, 0, -1));
+                tasks.add(task);
+                running.put(producer, task);
+                executor.execute(task);
+            }
+            Hint result = null;
+            for (Task task : tasks) {
+                if (result != null) {
+                    task.cancel();
+                } else {
+                    task.done.await();
+                    if (budget != null)
+                        budget.charge(task.budget);
+                    if (task.failure instanceof RuntimeException)
+                        throw (RuntimeException)task.failure;
+                    if (task.failure instanceof Error)
+                        throw (Error)task.failure;
+                    if (task.failure != null)
+                        throw new RuntimeException(task.failure);
+                    result = task.hint;
+                }
+            }
+            return result;
+        } finally {
+            // The cancelled producers are waited for at their next use
+            for (Task task : tasks)
+                task.cancel();
+        }
+    }
+
+    /**
+     * Wait for the previous search of a producer to finish, so that it
+     * is not run by two threads at the same time. The previous search has
+     * either finished or been cancelled, so this does not take long; the
+     * wait is not interrupted, because the producer could not be used
+     * before it ends.
+     */
+    private void waitIdle(HintProducer producer) {
+        Task task = running.remove(producer);
+        if (task == null)
+            return;
+        boolean isInterrupted = false;
+        while (task.done.getCount() > 0) {
+            try {
+                task.done.await();
+            } catch (InterruptedException ex) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Stop the worker threads. The search cannot be used anymore.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Get the copy of the grid of a producer, up to date with the given
+     * grid. The copies are created by the calling thread.
+     */
+    private Grid getGrid(HintProducer producer, Grid grid) {
+        Grid copy = grids.get(producer);
+        if (copy == null || !copy.getVariant().equals(grid.getVariant())) {
+            copy = new Grid(grid.getVariant());
+            grids.put(producer, copy);
+        }
+        grid.copyTo(copy);
+        return copy;
+    }
+
+    /**
+     * The search for the first hint of one producer.
+     */
+    private static final class Task implements Runnable {
+
+        private final HintProducer producer;
+        private final Grid grid;
+        private final Budget budget;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean isCancelled = false;
+        private Hint hint = null;
+        private Throwable failure = null;
+
+        private Task(HintProducer producer, Grid grid, Budget budget) {
+            this.producer = producer;
+            this.grid = grid;
+            this.budget = budget;
+        }
+
+        public void run() {
+            Budget.setCurrent(budget);
+            try {
+                if (isCancelled)
+                    return;
+                SingleHintAccumulator accu = new SingleHintAccumulator();
+                producer.getHints(grid, accu);
+                hint = accu.getHint();
+            } catch (InterruptedException ex) {
+                // The worker threads are never interrupted
+            } catch (Throwable ex) {
+                // Errors too: the search must fail as the sequential one would
+                failure = ex;
+            } finally {
+                Budget.setCurrent(null);
+                done.countDown();
+            }
+        }
+
+        /**
+         * Cancel this search: it is skipped if it has not started yet, and
+         * stops at its next step if it is running.
+         */
+        private void cancel() {
+            isCancelled = true;
+            budget.cancel();
+        }
+
+    }
+
+}
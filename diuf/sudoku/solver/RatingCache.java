@@ -0,0 +1,237 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver;
+
+import java.io.*;
+import java.util.*;
+
+import diuf.sudoku.*;
+
+/**
+ * Persistent cache of the ratings of puzzles, so that a collection of
+ * puzzles can be rated again without running the solver on the puzzles
+ * that were already rated.
+ * <p>
+ * The cache is an append-only text file. A line starting with <tt>@</tt>
+ * gives the fingerprint of the lines that follow it; the other lines are
+ * ratings:
+ * <pre>
+ * &#64;2022.3.24 1111...0 sudoku puzzle serate
+ * 1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3.. 10.5 1.2 1.2 35210 ok
+ * </pre>
+ * The fingerprint is made of the version of Sudoku Explainer, the
+ * solving techniques and the variant selected in the {@link Settings},
+ * the kind of key, and a description of the rating method given by the
+ * caller. Only the ratings whose fingerprint is the current one are used:
+ * the ratings made by other versions, or with other techniques, are ignored,
+ * but kept in the file. A rating is the key of the puzzle, the rating, the
+ * pearl and diamond ratings, the time it took in milliseconds, and the
+ * {@link Solver.Stop rating mode} that stopped it, or <tt>ok</tt>.
+ * <p>
+ * The key of a puzzle is its 81 cells, with <tt>.</tt> for the empty ones.
+ * The canonical form of the puzzle can be used instead for the vanilla
+ * sudokus, so that the equivalent puzzles share their rating; the rating
+ * of equivalent puzzles may however differ, as the order of the hints
+ * depends on the order of the cells.
+ * <p>
+ * The ratings stopped by a {@link Budget} are not stored, since another
+ * run could complete them. Instances are not thread-safe.
+ */
+public class RatingCache {
+
+    /**
+     * A rating read from the cache.
+     */
+    public static final class Rating {
+
+        public final double difficulty;
+        public final double pearl;
+        public final double diamond;
+        public final long elapsed;
+        public final Solver.Stop stopped;
+
+        private Rating(double difficulty, double pearl, double diamond, long elapsed,
+                Solver.Stop stopped) {
+            this.difficulty = difficulty;
+            this.pearl = pearl;
+            this.diamond = diamond;
+            this.elapsed = elapsed;
+            this.stopped = stopped;
+        }
+
+        /**
+         * Set the ratings of a solver to this rating, as if the solver had
+         * just rated the puzzle.
+         * @param solver the solver
+         */
+        public void applyTo(Solver solver) {
+            solver.difficulty = this.difficulty;
+            solver.pearl = this.pearl;
+            solver.diamond = this.diamond;
+            solver.stopped = this.stopped;
+            solver.exceeded = null;
+        }
+
+    }
+
+    private final File file;
+    private final String fingerprint;
+    private final boolean isCanonical;
+    private final Map<String, Rating> ratings = new HashMap<String, Rating>();
+    private Writer writer = null;
+    private boolean isHeaderWritten = false;
+
+    /**
+     * Open a cache, and read the ratings of the current fingerprint.
+     * The file is created when the first rating is stored.
+     * @param file the file of the cache
+     * @param method the description of the rating method, for instance the
+     * name of the tool and its {@link Solver#getRatingMode() rating mode}.
+     * It must not contain line breaks.
+     * @param isCanonical whether the puzzles are keyed by their canonical
+     * form. Ignored if the variant of the settings is not vanilla.
+     * @throws IOException if the file cannot be read
+     */
+    public RatingCache(File file, String method, boolean isCanonical) throws IOException {
+        this.file = file;
+        this.isCanonical = isCanonical && Variant.fromSettings().isVanilla();
+        this.fingerprint = getFingerprint(method, this.isCanonical);
+        if (file.exists())
+            load();
+    }
+
+    private static String getFingerprint(String method, boolean isCanonical) {
+        StringBuilder result = new StringBuilder();
+        result.append(Settings.VERSION).append('.').append(Settings.REVISION).append('.')
+                .append(Settings.SUBREV).append(' ');
+        EnumSet<SolvingTechnique> techniques = Settings.getInstance().getTechniques();
+        for (SolvingTechnique technique : EnumSet.allOf(SolvingTechnique.class))
+            result.append(techniques.contains(technique) ? '1' : '0');
+        result.append(' ').append(Variant.fromSettings());
+        result.append(isCanonical ? " canonical" : " puzzle");
+        if (method.length() > 0)
+            result.append(' ').append(method);
+        return result.toString();
+    }
+
+    private void load() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            boolean isCurrent = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("@")) {
+                    isCurrent = line.substring(1).equals(fingerprint);
+                    isHeaderWritten = isCurrent;
+                } else if (isCurrent) {
+                    String[] fields = line.split(" ");
+                    if (fields.length == 6 && fields[0].length() == 81) {
+                        try {
+                            Solver.Stop stopped = null;
+                            if (!fields[5].equals("ok"))
+                                stopped = Solver.Stop.valueOf(fields[5].toUpperCase());
+                            ratings.put(fields[0], new Rating(Double.parseDouble(fields[1]),
+                                    Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                                    Long.parseLong(fields[4]), stopped));
+                        } catch (IllegalArgumentException ex) {
+                            // Incomplete line, left by an interrupted run
+                        }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Get the key of a puzzle.
+     * @param puzzle the puzzle, as a string of at least 81 characters:
+     * the digits <tt>1</tt> to <tt>9</tt> and the letters <tt>A</tt> to
+     * <tt>I</tt> are givens, any other character is an empty cell.
+     */
+    private String getKey(String puzzle) {
+        if (isCanonical)
+            return Canonicalizer.getCanonicalForm(puzzle);
+        StringBuilder result = new StringBuilder(81);
+        for (int i = 0; i < 81; i++) {
+            char ch = puzzle.charAt(i);
+            if (ch >= 'A' && ch <= 'I')
+                ch = (char)(ch - 'A' + '1');
+            result.append(ch >= '1' && ch <= '9' ? ch : '.');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the rating of a puzzle.
+     * @param puzzle the puzzle, in the 81-character form
+     * @return the rating of the puzzle, or <tt>null</tt> if the puzzle has
+     * not been rated with the current fingerprint
+     */
+    public Rating get(String puzzle) {
+        return ratings.get(getKey(puzzle));
+    }
+
+    /**
+     * Store the rating that a solver has just made. Nothing is stored if the
+     * rating was stopped by a {@link Budget}.
+     * @param puzzle the puzzle, in the 81-character form
+     * @param solver the solver, holding the ratings of the puzzle
+     * @param elapsed the time it took to rate the puzzle, in milliseconds
+     * @throws IOException if the rating cannot be written
+     */
+    public void put(String puzzle, Solver solver, long elapsed) throws IOException {
+        if (solver.exceeded != null)
+            return;
+        String key = getKey(puzzle);
+        Rating rating = new Rating(solver.difficulty, solver.pearl, solver.diamond, elapsed,
+                solver.stopped);
+        ratings.put(key, rating);
+        if (writer == null)
+            open();
+        if (!isHeaderWritten) {
+            writer.write("@" + fingerprint + "\n");
+            isHeaderWritten = true;
+        }
+        writer.write(key + " " + rating.difficulty + " " + rating.pearl + " " + rating.diamond
+                + " " + rating.elapsed + " "
+                + (rating.stopped == null ? "ok" : rating.stopped.name().toLowerCase()) + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Open the file for appending. If a previous run was interrupted while
+     * writing a line, the line is terminated first.
+     */
+    private void open() throws IOException {
+        boolean isTerminated = true;
+        if (file.length() > 0) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek(raf.length() - 1);
+                isTerminated = (raf.read() == '\n');
+            } finally {
+                raf.close();
+            }
+        }
+        writer = new BufferedWriter(new FileWriter(file, true));
+        if (!isTerminated)
+            writer.write("\n");
+    }
+
+    /**
+     * Close the file of the cache.
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+}
@@ -21,17 +21,18 @@ public class SmallestHintAccumulator implements HintsAccumulator {
         super();
     }
 
-    public void add( Hint hint) throws InterruptedException {
+    public boolean add( Hint hint) {
         double newDifficulty = ((Rule)hint).getDifficulty();
         if ( lastDifficulty == 0.0 ) {
             lastDifficulty = newDifficulty;
         }
         if ( lastDifficulty != newDifficulty ) {
-            throw new InterruptedException();
+            return true;
         }
         if ( !result.contains( hint) ) {
             result.add( hint);
         }
+        return false;
     }
 
     public List<Hint> getHints() {
@@ -51,6 +51,44 @@ public class Solver {
     public double pearl;
     public double diamond;
     public char want;
+    /**
+     * Stop the rating as soon as the difficulty is above this value, or
+     * <tt>0.0</tt> to rate completely.
+     */
+    public double maxDifficulty;
+    /**
+     * Stop the rating as soon as the difficulty reaches this value, or
+     * <tt>0.0</tt> to rate completely.
+     */
+    public double minDifficulty;
+    /**
+     * The rating mode that stopped the last rating, or <tt>null</tt> if
+     * it was not stopped by {@link #want}, {@link #maxDifficulty} or
+     * {@link #minDifficulty}. The ratings of a stopped rating are the ones
+     * reached so far, except for the pearls and diamonds, whose rating is
+     * set to <tt>20.0</tt>.
+     */
+    public Stop stopped;
+    /**
+     * The limit of the budget that stopped the last rating, or <tt>null</tt>
+     * if the rating is complete. The ratings of a stopped rating are the
+     * ones reached so far.
+     */
+    public Budget.Limit exceeded;
+
+    /**
+     * The reasons why a rating mode stops a rating.
+     */
+    public enum Stop {
+        /** The puzzle is not a pearl */
+        NOT_PEARL,
+        /** The puzzle is not a diamond */
+        NOT_DIAMOND,
+        /** The difficulty is above {@link Solver#maxDifficulty} */
+        ABOVE_MAX,
+        /** The difficulty has reached {@link Solver#minDifficulty} */
+        MIN_REACHED
+    }
 
     private Grid grid;
     private List<HintProducer> directHintProducers;
@@ -62,6 +100,11 @@ public class Solver {
     private List<IndirectHintProducer> advancedHintProducers;
     private List<IndirectHintProducer> experimentalHintProducers;
 
+    // Concurrent evaluation of the tiers of producers, or null
+    private ParallelHintSearch parallelSearch = null;
+    // Limits on the ratings, or null
+    private Budget budget = null;
+
 //  private boolean isUsingAdvanced = false;
 
     private String ATA = "@"+Settings.getInstance().getsA();
@@ -75,13 +118,36 @@ public class Solver {
             this.result = result;
         }
 
-        public void add(Hint hint) throws InterruptedException {
+        public boolean add(Hint hint) throws InterruptedException {
             if (!result.contains(hint))
                 result.add(hint);
+            return false;
         }
 
     } // class DefaultHintsAccumulator
 
+    /**
+     * Hints accumulator that forwards the hints to another one, and records
+     * whether it has asked to stop. The hints added after that are ignored.
+     */
+    private static class StopRecorder implements HintsAccumulator {
+
+        private final HintsAccumulator target;
+        private boolean isStopped = false;
+
+        private StopRecorder(HintsAccumulator target) {
+            super();
+            this.target = target;
+        }
+
+        public boolean add(Hint hint) throws InterruptedException {
+            if (!isStopped)
+                isStopped = target.add(hint);
+            return isStopped;
+        }
+
+    } // class StopRecorder
+
     private void addIfWorth(SolvingTechnique technique, Collection<HintProducer> coll, HintProducer producer) {
         if (Settings.getInstance().getTechniques().contains(technique))
             coll.add(producer);
@@ -142,6 +208,7 @@ public class Solver {
         validatorHintProducers.add(new NoDoubles());
         warningHintProducers = new ArrayList<WarningHintProducer>();
         warningHintProducers.add(new NumberOfFilledCells());
+        warningHintProducers.add(new NoContradictions());
         warningHintProducers.add(new NumberOfValues());
         warningHintProducers.add(new BruteForceAnalysis(false));
         // These are very slow. We add them only as "rescue"
@@ -154,79 +221,178 @@ public class Solver {
     }
 
     /**
+     * Rebuild, for each empty cell, the set of potential values.
+     */
+    public void rebuildPotentialValues() {
+        SinglesPropagator.rebuildPotentials(grid);
+    }
+
+    /**
+     * Remove all illegal potential values according
+     * to the current values of the cells.
+     * Can be invoked after a new cell gets a value.
+     * <p>
      * This is the basic Sudoku rule: If a cell contains a value,
      * that value can be removed from the potential values of
-     * all cells in the same block, row or column.
-     * @param partType the Class of the part to cancel in
-     * (block, row or column)
+     * all cells in the same regions.
      */
-    private <T extends Grid.Region> void cancelBy(Class<T> partType) {
-        Grid.Region[] parts = grid.getRegions(partType);
-        for (Grid.Region part : parts) {
-            for (int i = 0; i < 9; i++) {
-                Cell cell = part.getCell(i);
-                if (!cell.isEmpty()) {
-                    int value = cell.getValue();
-                    // Remove the cell value from the potential values of other cells
-                    for (int j = 0; j < 9; j++)
-                        part.getCell(j).removePotentialValue(value);
-                }
-            }
+    public void cancelPotentialValues() {
+        SinglesPropagator.cancelPotentials(grid);
+    }
+
+    /**
+     * Run the given hint producers in order, until the accumulator asks
+     * to stop.
+     * @return whether the accumulator has asked to stop
+     */
+    private boolean getHints(List<? extends HintProducer> producers, StopRecorder accu)
+            throws InterruptedException {
+        for (HintProducer producer : producers) {
+            producer.getHints(grid, accu);
+            if (accu.isStopped)
+                return true;
         }
+        return false;
     }
 
     /**
-     * Rebuild, for each empty cell, the set of potential values.
+     * Set the number of threads used by {@link #getDifficulty()} and
+     * {@link #getHintsHint()} to evaluate the hint producers of each
+     * difficulty tier concurrently. The hints, and hence the ratings, are
+     * the same as with a single thread.
+     * @param threads the number of threads. With 1 (the default), the
+     * producers are run one after the other by the calling thread. With 0
+     * or less, all the available processors are used.
      */
-    public void rebuildPotentialValues() {
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell cell = grid.getCell(x, y);
-                if (cell.getValue() == 0) {
-                    for (int value = 1; value <= 9; value++)
-                        cell.addPotentialValue(value);
-                }
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        if (parallelSearch != null)
+            parallelSearch.shutdown();
+        parallelSearch = (threads > 1 ? new ParallelHintSearch(threads) : null);
+    }
+
+    /**
+     * Set the budget of the ratings made by {@link #getDifficulty()},
+     * {@link #getBatchDifficulty()} and {@link #getHintsHint()}. The budget
+     * is restarted for each rating; when it is exceeded, the rating stops
+     * and {@link #exceeded} tells which limit was reached.
+     * @param budget the budget, or <tt>null</tt> for no limit
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Start a rating: restart the budget, and make it the budget of the
+     * current thread.
+     */
+    private void startBudget() {
+        exceeded = null;
+        if (budget != null)
+            budget.start();
+        Budget.setCurrent(budget);
+    }
+
+    /**
+     * End a rating: the other uses of the solver have no budget.
+     */
+    private void stopBudget() {
+        Budget.setCurrent(null);
+    }
+
+    /**
+     * Get the first hint of all the producers but the warning ones, as used
+     * by {@link #getDifficulty()}.
+     * @return the first hint, or <tt>null</tt> if no producer has a hint
+     * @throws BudgetExceededException if the budget is exceeded
+     */
+    private Hint getFirstHint() {
+        SingleHintAccumulator accu = new SingleHintAccumulator();
+        StopRecorder stop = new StopRecorder(accu);
+        try {
+            if (parallelSearch != null) {
+                // The direct producers are cheap: no need for other threads
+                if (getHints(directHintProducers, stop))
+                    return accu.getHint();
+                Hint hint = parallelSearch.getFirstHint(grid, indirectHintProducers);
+                if (hint == null)
+                    hint = parallelSearch.getFirstHint(grid, chainingHintProducers);
+                if (hint == null)
+                    hint = parallelSearch.getFirstHint(grid, chainingHintProducers2);
+                if (hint == null)
+                    hint = parallelSearch.getFirstHint(grid, advancedHintProducers);
+                if (hint == null)
+                    hint = parallelSearch.getFirstHint(grid, experimentalHintProducers);
+                return hint;
             }
-        }
-        cancelPotentialValues();
+            if (!getHints(directHintProducers, stop)
+                    && !getHints(indirectHintProducers, stop)
+                    && !getHints(chainingHintProducers, stop)
+                    && !getHints(chainingHintProducers2, stop)
+                    && !getHints(advancedHintProducers, stop))
+                getHints(experimentalHintProducers, stop);
+        } catch (InterruptedException interrupted) {}
+        return accu.getHint();
     }
 
     /**
-     * Remove all illegal potential values according
-     * to the current values of the cells.
-     * Can be invoked after a new cell gets a value.
+     * Get a description of the rating modes, for instance
+     * <tt>want=p max=9.0</tt>. The ratings made with the same description
+     * are stopped in the same way.
+     * @return the description of the rating modes, empty if the ratings
+     * are complete
      */
-    public void cancelPotentialValues() {
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell cell = grid.getCell(x, y);
-                if (cell.getValue() != 0)
-                    cell.clearPotentialValues();
+    public String getRatingMode() {
+        StringBuilder result = new StringBuilder();
+        if (want != 0)
+            result.append(" want=").append(want);
+        if (maxDifficulty > 0.0)
+            result.append(" max=").append(maxDifficulty);
+        if (minDifficulty > 0.0)
+            result.append(" min=").append(minDifficulty);
+        return result.toString().trim();
+    }
+
+    /**
+     * Apply a hint of a rating, update the ratings, and check the rating
+     * modes.
+     * @param hint the hint
+     * @return whether the rating must stop
+     */
+    private boolean applyRating(Hint hint) {
+//a     assert hint instanceof Rule;
+        Rule rule = (Rule)hint;
+        double ruleDiff = rule.getDifficulty();
+        if (ruleDiff > difficulty)
+            difficulty = ruleDiff;
+        hint.apply(grid);
+        if (pearl == 0.0) {
+            if (diamond == 0.0)
+                diamond = difficulty;
+            if (hint.getCell() != null) {
+                if (want == 'd' && difficulty > diamond) {
+                    difficulty = 20.0;
+                    stopped = Stop.NOT_DIAMOND;
+                    return true;
+                }
+                pearl = difficulty;
             }
         }
-      if ( !grid.isLatinSquare() ) {
-        cancelBy(Grid.Block.class);
-      }
-        cancelBy(Grid.Row.class);
-        cancelBy(Grid.Column.class);
-
-      if ( grid.isDiagonals() ) {
-       if ( grid.isXDiagonal() ) {
-        cancelBy(Grid.Diagonal.class);
-       }
-       if ( grid.isXAntiDiagonal() ) {
-        cancelBy(Grid.AntiDiagonal.class);
-       }
-      }
-      if ( grid.isDisjointGroups() ) {
-        cancelBy(Grid.DisjointGroup.class);
-      }
-      if ( grid.isWindoku() ) {
-        cancelBy(Grid.Windoku.class);
-      }
-      if ( grid.isCustom() ) {
-        cancelBy(Grid.Custom.class);
-      }
+        else if (want != 0 && difficulty > pearl) {
+            difficulty = 20.0;
+            stopped = Stop.NOT_PEARL;
+            return true;
+        }
+        if (maxDifficulty > 0.0 && difficulty > maxDifficulty) {
+            stopped = Stop.ABOVE_MAX;
+            return true;
+        }
+        if (minDifficulty > 0.0 && difficulty >= minDifficulty) {
+            stopped = Stop.MIN_REACHED;
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -259,24 +425,38 @@ public class Solver {
      * This can be used to check the validity of a
      * Sudoku grid. If the sudoku is valid, <code>null</code>
      * is returned; else, a warning hint.
+     * <p>
+     * The checks are run in stages, from the cheapest to the brute-force
+     * analysis, and stop at the first stage that rejects the sudoku:
+     * values twice in a region, solved grid, contradictions found by the
+     * singles, number of different values, and number of solutions.
+     * The rule of the returned hint is the stage that rejected the sudoku.
      * @return a warning hint if the sudoku is invalid, <code>null</code>
      * if the sudoku is valid.
      */
     public Hint checkValidity() {
         int oldPriority = lowerPriority();
         SingleHintAccumulator accu = new SingleHintAccumulator();
+        StopRecorder stop = new StopRecorder(accu);
         try {
-            for (WarningHintProducer producer : validatorHintProducers)
-                producer.getHints(grid, accu);
-            for (WarningHintProducer producer : warningHintProducers)
-                producer.getHints(grid, accu);
-        } catch (InterruptedException willProbablyHappen) {}
+            if (!getHints(validatorHintProducers, stop))
+                getHints(warningHintProducers, stop);
+        } catch (InterruptedException interrupted) {}
         normalPriority(oldPriority);
         return accu.getHint();
     }
 
-    private void gatherProducer(List<Hint> previousHints, List<Hint> curHints,
-            HintsAccumulator accu, HintProducer producer) throws InterruptedException {
+    private boolean gatherProducers(List<Hint> previousHints, List<Hint> curHints,
+            StopRecorder accu, List<? extends HintProducer> producers) throws InterruptedException {
+        for (HintProducer producer : producers) {
+            if (gatherProducer(previousHints, curHints, accu, producer))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean gatherProducer(List<Hint> previousHints, List<Hint> curHints,
+            StopRecorder accu, HintProducer producer) throws InterruptedException {
         // Get last hint producer. Because the last producer may not have produced
         // all its hints, we will need to restart from scratch with it.
         HintProducer lastProducer = null;
@@ -288,12 +468,14 @@ public class Solver {
             Hint hint = null;
             hint = previousHints.get(curHints.size());
             while (hint.getRule() == producer) {
-                accu.add(hint);
+                if (accu.add(hint))
+                    return true;
                 hint = previousHints.get(curHints.size());
             }
         } else
             // Compute now
             producer.getHints(grid, accu);
+        return accu.isStopped;
     }
 
     public void gatherHints(List<Hint> previousHints, final List<Hint> result,
@@ -301,21 +483,19 @@ public class Solver {
 
         int oldPriority = lowerPriority();
     //  boolean isAdvanced = false;
+        StopRecorder stop = new StopRecorder(accu);
         try {
-            for (HintProducer producer : directHintProducers)
-                gatherProducer(previousHints, result, accu, producer);
-            for (HintProducer producer : indirectHintProducers)
-                gatherProducer(previousHints, result, accu, producer);
-            for (HintProducer producer : validatorHintProducers)
-                gatherProducer(previousHints, result, accu, producer);
+            if (gatherProducers(previousHints, result, stop, directHintProducers)
+                    || gatherProducers(previousHints, result, stop, indirectHintProducers)
+                    || gatherProducers(previousHints, result, stop, validatorHintProducers))
+                return;
             if (result.isEmpty()) {
-                for (HintProducer producer : warningHintProducers)
-                    gatherProducer(previousHints, result, accu, producer);
+                if (gatherProducers(previousHints, result, stop, warningHintProducers))
+                    return;
             }
-            for (HintProducer producer : chainingHintProducers)
-                gatherProducer(previousHints, result, accu, producer);
-            for (HintProducer producer : chainingHintProducers2)
-                gatherProducer(previousHints, result, accu, producer);
+            if (gatherProducers(previousHints, result, stop, chainingHintProducers)
+                    || gatherProducers(previousHints, result, stop, chainingHintProducers2))
+                return;
             boolean hasWarning = false;
             for (Hint hint : result) {
                 if (hint instanceof WarningHint)
@@ -327,17 +507,17 @@ public class Solver {
     //              (isUsingAdvanced || asker.ask(ADVANCED_WARNING2))) {
     //          isAdvanced = true;
     //          isUsingAdvanced = true;
-                for (HintProducer producer : advancedHintProducers)
-                    gatherProducer(previousHints, result, accu, producer);
-                for (HintProducer producer : experimentalHintProducers) {
-    //              if (result.isEmpty() && Settings.getInstance().isUsingAllTechniques())
-                        gatherProducer(previousHints, result, accu, producer);
-                }
+                if (gatherProducers(previousHints, result, stop, advancedHintProducers))
+                    return;
+    //          if (result.isEmpty() && Settings.getInstance().isUsingAllTechniques())
+                    gatherProducers(previousHints, result, stop, experimentalHintProducers);
     //      }
-        } catch (InterruptedException willProbablyHappen) {}
-    //  if (!isAdvanced)
-    //      isUsingAdvanced = false;
-        normalPriority(oldPriority);
+        } catch (InterruptedException interrupted) {
+        } finally {
+    //      if (!isAdvanced)
+    //          isUsingAdvanced = false;
+            normalPriority(oldPriority);
+        }
     }
 
     public List<Hint> getAllHints(Asker asker) {
@@ -424,26 +604,20 @@ public class Solver {
     //  boolean isUsingAdvanced = false;
         while (!isSolved()) {
             SingleHintAccumulator accu = new SingleHintAccumulator();
+            StopRecorder stop = new StopRecorder(accu);
             try {
-                for (HintProducer producer : directHintProducers)
-                    producer.getHints(grid, accu);
-                for (IndirectHintProducer producer : indirectHintProducers)
-                    producer.getHints(grid, accu);
-                for (IndirectHintProducer producer : chainingHintProducers)
-                    producer.getHints(grid, accu);
-                for (IndirectHintProducer producer : chainingHintProducers2)
-                    producer.getHints(grid, accu);
+                if (!getHints(directHintProducers, stop)
+                        && !getHints(indirectHintProducers, stop)
+                        && !getHints(chainingHintProducers, stop)
+                        && !getHints(chainingHintProducers2, stop)) {
     //          if (!(advancedHintProducers.isEmpty() && experimentalHintProducers.isEmpty()) &&
     //                  (asker == null || isUsingAdvanced || asker.ask(ADVANCED_WARNING1))) {
     //              isUsingAdvanced = true;
-                    for (IndirectHintProducer producer : advancedHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : experimentalHintProducers) {
+                    if (!getHints(advancedHintProducers, stop))
     //                  if (Settings.getInstance().isUsingAllTechniques())
-                            producer.getHints(grid, accu);
-                    }
-    //          }
-            } catch (InterruptedException willHappen) {}
+                        getHints(experimentalHintProducers, stop);
+                }
+            } catch (InterruptedException interrupted) {}
             Hint hint = accu.getHint();
             if (hint == null)
                 throw new UnsupportedOperationException("Failed to solve this Sudoku");
@@ -477,17 +651,14 @@ public class Solver {
             double difficulty = 0.0;
             while (!isSolved()) {
                 SingleHintAccumulator accu = new SingleHintAccumulator();
+                StopRecorder stop = new StopRecorder(accu);
                 try {
-                    for (HintProducer producer : directHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : indirectHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers2)
-                        producer.getHints(grid, accu);
+                    if (!getHints(directHintProducers, stop)
+                            && !getHints(indirectHintProducers, stop)
+                            && !getHints(chainingHintProducers, stop))
+                        getHints(chainingHintProducers2, stop);
                     // Only used for generator. Ignore advanced/experimental techniques
-                } catch (InterruptedException willHappen) {}
+                } catch (InterruptedException interrupted) {}
                 Hint hint = accu.getHint();
                 if (hint == null) {
                     System.err.println("Failed to solve:\n" + grid.toString());
@@ -511,147 +682,84 @@ public class Solver {
     }
 
     public void getBatchDifficulty() {
-        Grid backup = new Grid();
-        grid.copyTo(backup);
+        GridPool pool = GridPool.getInstance();
+        Grid backup = pool.acquire(grid);
+        startBudget();
         try {
             difficulty = 0.0;
             pearl = 0.0;
             diamond = 0.0;
+            stopped = null;
             SmallestHintAccumulator accu = new SmallestHintAccumulator();
-            while (!isSolved()) {
+            while (!isSolved() && stopped == null) {
 ///             SingleHintAccumulator accu = new SingleHintAccumulator();
+                StopRecorder stop = new StopRecorder(accu);
                 try {
-                    for (HintProducer producer : directHintProducers)
-                        producer.getHints(grid, accu);
-                    if ( accu.hasHints() ) throw new InterruptedException();
-                    for (IndirectHintProducer producer : indirectHintProducers)
-                        producer.getHints(grid, accu);
-                    if ( accu.hasHints() ) throw new InterruptedException();
-                    for (IndirectHintProducer producer : chainingHintProducers)
-                        producer.getHints(grid, accu);
-                    if ( accu.hasHints() ) throw new InterruptedException();
-                    for (IndirectHintProducer producer : chainingHintProducers2)
-                        producer.getHints(grid, accu);
-                    if ( accu.hasHints() ) throw new InterruptedException();
-                    for (IndirectHintProducer producer : advancedHintProducers)
-                        producer.getHints(grid, accu);
-                    if ( accu.hasHints() ) throw new InterruptedException();
-                    for (IndirectHintProducer producer : experimentalHintProducers)
-                        producer.getHints(grid, accu);
-                } catch (InterruptedException willHappen) {}
+                    // Stop at the first tier that has hints
+                    if (!(getHints(directHintProducers, stop) || accu.hasHints()
+                            || getHints(indirectHintProducers, stop) || accu.hasHints()
+                            || getHints(chainingHintProducers, stop) || accu.hasHints()
+                            || getHints(chainingHintProducers2, stop) || accu.hasHints()
+                            || getHints(advancedHintProducers, stop) || accu.hasHints()))
+                        getHints(experimentalHintProducers, stop);
+                } catch (InterruptedException interrupted) {}
                 List<Hint> hints = accu.getHints();
                 if ( hints.isEmpty() ) {
                     difficulty = 20.0;
                     break;
                 }
-//a             assert hint instanceof Rule;
               for ( Hint hint : hints ) {
-                Rule rule = (Rule)hint;
-                double ruleDiff = rule.getDifficulty();
-                if (ruleDiff > difficulty)
-                    difficulty = ruleDiff;
-                hint.apply(grid);
-                if (pearl == 0.0) {
-                    if (diamond == 0.0)
-                        diamond = difficulty;
-                    if (hint.getCell() != null) {
-                        if (want == 'd' && difficulty > diamond) {
-                            difficulty = 20.0;
-                            break;
-                        }
-                        pearl = difficulty;
-                    }
-                }
-                else if (want != 0 && difficulty > pearl) {
-                    difficulty = 20.0;
+                if (applyRating(hint))
                     break;
-                }
               }
               accu.clear();
             }
+        } catch (BudgetExceededException ex) {
+            exceeded = ex.getLimit();
         } finally {
+            stopBudget();
             backup.copyTo(grid);
+            pool.release(backup);
         }
     }
 
     public void getDifficulty() {
-        Grid backup = new Grid();
-        grid.copyTo(backup);
+        GridPool pool = GridPool.getInstance();
+        Grid backup = pool.acquire(grid);
+        startBudget();
         try {
             difficulty = 0.0;
             pearl = 0.0;
             diamond = 0.0;
+            stopped = null;
             while (!isSolved()) {
-                SingleHintAccumulator accu = new SingleHintAccumulator();
-                try {
-                    for (HintProducer producer : directHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : indirectHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers2)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : advancedHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : experimentalHintProducers)
-                        producer.getHints(grid, accu);
-                } catch (InterruptedException willHappen) {}
-                Hint hint = accu.getHint();
+                Hint hint = getFirstHint();
                 if (hint == null) {
                     difficulty = 20.0;
                     break;
                 }
-//a             assert hint instanceof Rule;
-                Rule rule = (Rule)hint;
-                double ruleDiff = rule.getDifficulty();
-                if (ruleDiff > difficulty)
-                    difficulty = ruleDiff;
-                hint.apply(grid);
-                if (pearl == 0.0) {
-                    if (diamond == 0.0)
-                        diamond = difficulty;
-                    if (hint.getCell() != null) {
-                        if (want == 'd' && difficulty > diamond) {
-                            difficulty = 20.0;
-                            break;
-                        }
-                        pearl = difficulty;
-                    }
-                }
-                else if (want != 0 && difficulty > pearl) {
-                    difficulty = 20.0;
+                if (applyRating(hint))
                     break;
-                }
             }
+        } catch (BudgetExceededException ex) {
+            exceeded = ex.getLimit();
         } finally {
+            stopBudget();
             backup.copyTo(grid);
+            pool.release(backup);
         }
     }
 
     public void getHintsHint() {
+        startBudget();
+        try {
             difficulty = 0.0;
             pearl = 0.0;
             diamond = 0.0;
             while (!isSolved()) {
-                SingleHintAccumulator accu = new SingleHintAccumulator();
                 long tt = System.currentTimeMillis(); long hh, mm, ss, ms;
-                try {
-                    for (HintProducer producer : directHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : indirectHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : chainingHintProducers2)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : advancedHintProducers)
-                        producer.getHints(grid, accu);
-                    for (IndirectHintProducer producer : experimentalHintProducers)
-                        producer.getHints(grid, accu);
-                } catch (InterruptedException willHappen) {}
+                Hint hint = getFirstHint();
                 tt = System.currentTimeMillis() - tt;
-                Hint hint = accu.getHint();
                 if (hint == null) {
                     difficulty = 20.0;
                     break;
@@ -730,6 +838,11 @@ public class Solver {
                     }
                 }
             }
+        } catch (BudgetExceededException ex) {
+            exceeded = ex.getLimit();
+        } finally {
+            stopBudget();
+        }
     }
 
     public Map<String, Integer> toNamedList(Map<Rule, Integer> rules) {
@@ -746,32 +859,34 @@ public class Solver {
     }
 
     public Hint analyse(Asker asker) {
-        Grid copy = new Grid();
-        grid.copyTo(copy);
+        GridPool pool = GridPool.getInstance();
+        Grid copy = pool.acquire(grid);
         try {
             SingleHintAccumulator accu = new SingleHintAccumulator();
+            StopRecorder stop = new StopRecorder(accu);
             try {
-                for (WarningHintProducer producer : validatorHintProducers)
-                    producer.getHints(grid, accu);
-                for (WarningHintProducer producer : warningHintProducers)
-                    producer.getHints(grid, accu);
-                Analyser engine = new Analyser(this, asker);
-                engine.getHints(grid, accu);
-            } catch (InterruptedException willProbablyHappen) {}
+                if (!getHints(validatorHintProducers, stop)
+                        && !getHints(warningHintProducers, stop)) {
+                    Analyser engine = new Analyser(this, asker);
+                    engine.getHints(grid, stop);
+                }
+            } catch (InterruptedException interrupted) {}
             return accu.getHint();
         } finally {
             copy.copyTo(grid);
+            pool.release(copy);
         }
     }
 
     public Hint bruteForceSolve() {
         SingleHintAccumulator accu = new SingleHintAccumulator();
+        StopRecorder stop = new StopRecorder(accu);
         try {
-            for (WarningHintProducer producer : validatorHintProducers)
-                producer.getHints(grid, accu);
-            Solution engine = new Solution();
-            engine.getHints(grid, accu);
-        } catch (InterruptedException willProbablyHappen) {}
+            if (!getHints(validatorHintProducers, stop)) {
+                Solution engine = new Solution();
+                engine.getHints(grid, stop);
+            }
+        } catch (InterruptedException interrupted) {}
         return accu.getHint();
     }
 
@@ -0,0 +1,141 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver;
+
+import diuf.sudoku.*;
+
+/**
+ * Long-lived solver, for rating many puzzles in a row.
+ * <p>
+ * A {@link Solver} creates all its hint producers when it is created, and
+ * some of them keep working grids and caches. A context creates its grid
+ * and its solver once, and loads each new puzzle into the same grid, so
+ * that this setup is not repeated for every puzzle.
+ * <p>
+ * Instances are reusable, but not thread-safe: each thread must use its own
+ * context. The contexts should be created by the thread that reads the
+ * {@link Settings}, because creating a grid may update them.
+ */
+public class SolverContext {
+
+    private final Grid grid;
+    private final Solver solver;
+
+    /**
+     * Create a new context, for the variant selected in the {@link Settings}.
+     */
+    public SolverContext() {
+        this(new Grid());
+    }
+
+    /**
+     * Create a new context working on the given grid.
+     * @param grid the grid, whose content is replaced by each puzzle
+     */
+    public SolverContext(Grid grid) {
+        this.grid = grid;
+        this.solver = new Solver(grid);
+    }
+
+    /**
+     * Get the grid of this context, holding the current puzzle.
+     * @return the grid of this context
+     */
+    public Grid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * Get the solver of this context, working on its grid.
+     * @return the solver of this context
+     */
+    public Solver getSolver() {
+        return this.solver;
+    }
+
+    /**
+     * Load a puzzle in the 81-character form: the digits <tt>1</tt> to
+     * <tt>9</tt> and the letters <tt>A</tt> to <tt>I</tt> are givens, any
+     * other character is an empty cell.
+     * The potential values are rebuilt, and the ratings of the solver
+     * are cleared.
+     * @param puzzle the puzzle
+     */
+    public void reset(String puzzle) {
+        for (int i = 0; i < 81; i++) {
+            char ch = puzzle.charAt(i);
+            int value = 0;
+            if (ch >= '1' && ch <= '9')
+                value = (ch - '0');
+            if (ch >= 'A' && ch <= 'I')
+                value = (ch - 'A'+1);
+            setValue(i, value);
+        }
+        reset();
+    }
+
+    /**
+     * Load the values of a grid as the givens of a new puzzle. The variant
+     * of this context's grid is kept.
+     * The potential values are rebuilt, and the ratings of the solver
+     * are cleared.
+     * @param puzzle the grid holding the puzzle
+     */
+    public void reset(Grid puzzle) {
+        for (int i = 0; i < 81; i++)
+            setValue(i, puzzle.getCellValue(i % 9, i / 9));
+        reset();
+    }
+
+    private void setValue(int index, int value) {
+        Cell cell = grid.getCell(index);
+        cell.setValue(value);
+        if (value != 0)
+            cell.setGiven();
+        else
+            cell.resetGiven();
+    }
+
+    private void reset() {
+        solver.rebuildPotentialValues();
+        solver.difficulty = solver.pearl = solver.diamond = 0.0;
+        solver.exceeded = null;
+        solver.stopped = null;
+    }
+
+    /**
+     * Load a puzzle and rate it with {@link Solver#getDifficulty()}. The
+     * pearl and diamond ratings are available from the solver afterwards.
+     * @param puzzle the puzzle, in the 81-character form
+     * @return the rating of the puzzle
+     * @see #reset(String)
+     */
+    public double rate(String puzzle) {
+        reset(puzzle);
+        return rate();
+    }
+
+    /**
+     * Load a puzzle and rate it with {@link Solver#getDifficulty()}.
+     * @param puzzle the grid holding the puzzle
+     * @return the rating of the puzzle
+     * @see #reset(Grid)
+     */
+    public double rate(Grid puzzle) {
+        reset(puzzle);
+        return rate();
+    }
+
+    private double rate() {
+        try {
+            solver.getDifficulty();
+        } catch (UnsupportedOperationException ex) {
+            solver.difficulty = solver.pearl = solver.diamond = 0.0;
+        }
+        return solver.difficulty;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import java.util.*;
+
+import diuf.sudoku.*;
+import diuf.sudoku.generator.*;
+
+/**
+ * Backtracking {@link BruteForceEngine} working on bit masks. This is the
+ * default engine of {@link BruteForceAnalysis}.
+ * <p>
+ * The state is held in two arrays: the value of each cell, and the potential
+ * values of each cell as a bit mask (bit <tt>value</tt> set if the value is
+ * possible, as in {@link Cell#getPotentialValuesMask()}). The regions are
+ * taken from the {@link Topology} of the grid, so that all the variants are
+ * supported.
+ * <p>
+ * Naked and hidden singles are propagated by {@link SinglesPropagator}, then
+ * the search branches on the empty cell with the fewest potential values.
+ * The state of each search level is saved in a preallocated stack, so that
+ * no object is created during a search.
+ * <p>
+ * Instances are reusable, but not thread-safe.
+ */
+public final class BitboardSolver implements BruteForceEngine {
+
+    static final int STATE_SIZE = 81 * 2;
+
+    private Topology topology = null;
+
+    private final int[] values = new int[81];
+    private final int[] potentials = new int[81];
+    private final int[] stack = new int[(81 + 1) * STATE_SIZE];
+
+    // Parameters and results of the current search
+    private Generator generator = null;
+    private SolutionEnumerator.Callback enumerator = null;
+    private int limit;
+    private int[][] solutions;
+    private int count;
+
+    /**
+     * Load the values and potential values of a grid. Potential values that
+     * are not compatible with the values of the peer cells are ignored.
+     */
+    public boolean load(Grid grid) {
+        setTopology(grid.getTopology());
+        for (int cell = 0; cell < 81; cell++) {
+            Cell gridCell = grid.getCell(cell % 9, cell / 9);
+            int value = gridCell.getValue();
+            values[cell] = value;
+            potentials[cell] = (value != 0 ? 1 << value : gridCell.getPotentialValuesMask());
+        }
+        for (int cell = 0; cell < 81; cell++) {
+            int value = values[cell];
+            if (value != 0) {
+                int mask = ~(1 << value);
+                for (int peer : topology.getPeers(cell)) {
+                    if (values[peer] == value)
+                        return false;
+                    potentials[peer] &= mask;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void setTopology(Topology topology) {
+        this.topology = topology;
+    }
+
+    /*
+     * Access to the state, for SolutionEnumerator. A state is an array of
+     * STATE_SIZE ints: the values of the cells, then their potential values.
+     */
+
+    Topology getTopology() {
+        return this.topology;
+    }
+
+    void getState(int[] state) {
+        System.arraycopy(values, 0, state, 0, 81);
+        System.arraycopy(potentials, 0, state, 81, 81);
+    }
+
+    void setState(Topology topology, int[] state) {
+        setTopology(topology);
+        System.arraycopy(state, 0, values, 0, 81);
+        System.arraycopy(state, 81, potentials, 0, 81);
+    }
+
+    /**
+     * Propagate the singles, and get the cell to branch on.
+     * @return the index of the cell to branch on, -1 if the grid is solved,
+     * or -2 if a contradiction was found
+     */
+    int propagateAndGetBranchCell() {
+        if (!propagate())
+            return -2;
+        return getBranchCell();
+    }
+
+    int getPotentials(int cell) {
+        return potentials[cell];
+    }
+
+    boolean assignValue(int cell, int value) {
+        return assign(cell, value);
+    }
+
+    /**
+     * Remove a potential value of an empty cell.
+     * @return <tt>false</tt> if the cell has no potential value left
+     */
+    boolean excludeValue(int cell, int value) {
+        potentials[cell] &= ~(1 << value);
+        return potentials[cell] != 0;
+    }
+
+    /**
+     * Enumerate all the solutions below the current state, passing them
+     * to the enumerator until it asks to stop.
+     */
+    void enumerate(SolutionEnumerator.Callback enumerator) {
+        this.enumerator = enumerator;
+        try {
+            search(Integer.MAX_VALUE, null, false, null);
+        } finally {
+            this.enumerator = null;
+        }
+    }
+
+    /**
+     * Search for a solution of the loaded grid. The values of the branching
+     * cells are tried in increasing order, in decreasing order if
+     * <tt>isReverse</tt> is set, or from a random starting value if a random
+     * number generator is given.
+     */
+    public boolean solve(boolean isReverse, Random rnd, Generator generator) {
+        this.generator = generator;
+        try {
+            return search(1, null, isReverse, rnd) > 0;
+        } finally {
+            this.generator = null;
+        }
+    }
+
+    public int countSolutions(int limit, int[][] solutions) {
+        return search(limit, solutions, false, null);
+    }
+
+    private int search(int limit, int[][] solutions, boolean isReverse, Random rnd) {
+        this.limit = limit;
+        this.solutions = solutions;
+        this.count = 0;
+        try {
+            search(0, isReverse, rnd);
+            return count;
+        } finally {
+            this.solutions = null;
+        }
+    }
+
+    /**
+     * Search for the solutions below the current state.
+     * @return whether the search must stop, that is, whether the limit has
+     * been reached or the generator has been stopped. When stopping on the
+     * first solution, the state is left as the solution.
+     */
+    private boolean search(int depth, boolean isReverse, Random rnd) {
+        if (!propagate())
+            return false;
+        int leastCell = getBranchCell();
+        if (leastCell < 0) {
+            // Solved
+            if (enumerator != null)
+                return enumerator.found(values);
+            if (solutions != null && count < solutions.length)
+                System.arraycopy(values, 0, solutions[count], 0, 81);
+            count++;
+            return count >= limit;
+        }
+        int base = depth * STATE_SIZE;
+        System.arraycopy(values, 0, stack, base, 81);
+        System.arraycopy(potentials, 0, stack, base + 81, 81);
+        int cellPotentials = potentials[leastCell];
+        int firstValue = (rnd != null ? rnd.nextInt(9) : 0);
+        for (int i = 0; i < 9; i++) {
+            int value;
+            if (rnd != null)
+                value = ((i + firstValue) % 9) + 1;
+            else
+                value = (isReverse ? 9 - i : i + 1);
+            if ((cellPotentials & (1 << value)) != 0) {
+                if (assign(leastCell, value)) {
+                    if (generator != null && generator.isButtonStopped())
+                        return true;
+                    if (enumerator != null && enumerator.isStopped())
+                        return true;
+                    if (search(depth + 1, isReverse, rnd))
+                        return true;
+                }
+                // Restore the state and continue with next value, if any
+                System.arraycopy(stack, base, values, 0, 81);
+                System.arraycopy(stack, base + 81, potentials, 0, 81);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the empty cell with the fewest potential values, on which the
+     * search branches.
+     * @return the index of the cell, or -1 if all the cells are filled
+     */
+    private int getBranchCell() {
+        int leastCell = -1;
+        int leastCardinality = 10;
+        for (int cell = 0; cell < 81; cell++) {
+            if (values[cell] == 0) {
+                int cardinality = Integer.bitCount(potentials[cell]);
+                if (cardinality < leastCardinality) {
+                    leastCardinality = cardinality;
+                    leastCell = cell;
+                    if (cardinality == 2)
+                        break; // Singles have been propagated, cannot be less
+                }
+            }
+        }
+        return leastCell;
+    }
+
+    /**
+     * Place all the naked and hidden singles, until there are none left.
+     * @return <tt>false</tt> if a contradiction was found
+     */
+    private boolean propagate() {
+        return SinglesPropagator.propagate(values, potentials, topology)
+                != SinglesPropagator.CONTRADICTION;
+    }
+
+    /**
+     * Set the value of a cell and remove it from the potential values of
+     * its peers.
+     * @return <tt>false</tt> if a contradiction was found
+     */
+    private boolean assign(int cell, int value) {
+        return SinglesPropagator.assign(values, potentials, topology, cell, value);
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+}
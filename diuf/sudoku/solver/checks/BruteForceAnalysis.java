@@ -9,7 +9,6 @@ import java.util.*;
 
 import diuf.sudoku.*;
 import diuf.sudoku.solver.*;
-import diuf.sudoku.solver.rules.*;
 import diuf.sudoku.generator.*;
 
 /**
@@ -20,13 +19,26 @@ import diuf.sudoku.generator.*;
  */
 public class BruteForceAnalysis implements WarningHintProducer {
 
-    private final Grid grid1 = new Grid();
-    private final Grid grid2 = new Grid();
     private final boolean includeSolution;
-
+    private final BruteForceEngine engine;
+    private final int[][] solutions = new int[2][81];
 
     public BruteForceAnalysis(boolean includeSolution) {
+        this(includeSolution, new BitboardSolver());
+    }
+
+    /**
+     * Create a brute-force analysis using the given search engine,
+     * for instance to compare the engines on a given variant.
+     * @param includeSolution whether to produce a hint with the solution
+     * of a valid sudoku
+     * @param engine the search engine
+     * @see BitboardSolver
+     * @see DancingLinksSolver
+     */
+    public BruteForceAnalysis(boolean includeSolution, BruteForceEngine engine) {
         this.includeSolution = includeSolution;
+        this.engine = engine;
     }
 
     /**
@@ -44,11 +56,11 @@ public class BruteForceAnalysis implements WarningHintProducer {
      */
     public void getHints(Grid grid, HintsAccumulator accu)
             throws InterruptedException {
-        grid.copyTo(grid1);
-        boolean hasSolution = analyse(grid1, false);
-        if (!hasSolution) {
-            grid.copyTo(grid1);
-            new Solver(grid1).rebuildPotentialValues();
+        int count = (engine.load(grid) ? engine.countSolutions(2, solutions) : 0);
+        if (count == 0) {
+            GridPool pool = GridPool.getInstance();
+            Grid grid1 = pool.acquire(grid);
+            SinglesPropagator.rebuildPotentials(grid1);
             WarningMessage message;
             if (grid.equals(grid1)) {
                 // All potential values correct - No solution
@@ -56,28 +68,43 @@ public class BruteForceAnalysis implements WarningHintProducer {
                 "NoSolution.html");
             } else {
                 // Some potential values missing. Check with all
-                hasSolution = analyse(grid1, false);
-                if (!hasSolution)
+                if (countSolutions(grid1, 1) == 0)
                     message = new WarningMessage(this, "The Sudoku has no solution",
                     "NoSolution.html");
                 else
                     message = new WarningMessage(this, "The Sudoku is not valid",
                     "MissingCandidates.html");
             }
+            pool.release(grid1);
             accu.add(message);
-            return;
-        }
-        grid.copyTo(grid2);
-        analyse(grid2, true);
-        if (!grid1.equals(grid2)) {
-            WarningHint message = new DoubleSolutionWarning(this, grid, grid1, grid2);
+        } else if (count == 2) {
+            WarningHint message = new DoubleSolutionWarning(this, grid,
+                    toGrid(grid, solutions[0]), toGrid(grid, solutions[1]));
             accu.add(message);
         } else if (this.includeSolution) {
-            IndirectHint hint = new SolutionHint(this, grid, grid1);
+            IndirectHint hint = new SolutionHint(this, grid, toGrid(grid, solutions[0]));
             accu.add(hint);
         }
     }
 
+    private static Grid toGrid(Grid grid, int[] solution) {
+        Grid result = new Grid(grid.getVariant());
+        grid.copyTo(result);
+        fill(result, solution);
+        return result;
+    }
+
+    /**
+     * Fill the empty cells of a grid with the values of a solution.
+     */
+    private static void fill(Grid grid, int[] solution) {
+        for (int cell = 0; cell < 81; cell++) {
+            Cell gridCell = grid.getCell(cell % 9, cell / 9);
+            if (gridCell.getValue() == 0)
+                gridCell.setValueAndCancel(solution[cell]);
+        }
+    }
+
     /**
      * Get information about the number of solutions of the given
      * sudoku grid.
@@ -89,37 +116,52 @@ public class BruteForceAnalysis implements WarningHintProducer {
      * <li><b>2</b> if the sudoku has <i>more than one</i> solution
      * </ul>
      * <p>
-     * Warning: you should first check that no value appear twice in the
-     * same row, column or block. Else, this method may be extremely slow.
+     * The potential values of the grid are rebuilt first.
      * @param grid the sudoku grid
      * @return information about the number of solutions
      */
     public int getCountSolutions(Grid grid) {
-        new Solver(grid).rebuildPotentialValues();
-        grid.copyTo(grid1);
-        if (!analyse(grid1, false))
-            return 0; // no solution
-        grid.copyTo(grid2);
-        analyse(grid2, true);
-        if (grid1.equals(grid2))
-            return 1; // one unique solution
-        else
-            return 2; // more than one solution
+        SinglesPropagator.rebuildPotentials(grid);
+        return countSolutions(grid, 2);
     }
 
     /**
-     * Check if the grid has been solved
+     * Count the solutions of the given grid, up to a limit.
+     * <p>
+     * The solutions are enumerated in a single search, that stops as soon as
+     * <tt>limit</tt> solutions have been found; use a limit of 2 to check
+     * that a sudoku has exactly one solution. The current potential values
+     * of the grid are taken into account, and the grid is not modified.
      * @param grid the sudoku grid
-     * @return whether the grid has been solved
+     * @param limit the maximum number of solutions to count, at least 1
+     * @return the number of solutions, between 0 and <tt>limit</tt>
      */
-    private static boolean isSolved(Grid grid) {
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                if (grid.getCellValue(x, y) == 0)
-                    return false;
-            }
-        }
-        return true;
+    public int countSolutions(Grid grid, int limit) {
+        if (!engine.load(grid))
+            return 0;
+        return engine.countSolutions(limit, null);
+    }
+
+    /**
+     * Get the first solutions of the given grid, up to a limit.
+     * <p>
+     * As {@link #countSolutions(Grid, int)}, but the solutions are returned
+     * as new grids, filled with the solution values. This is meant for small
+     * limits, such as 2 to get two different solutions of a sudoku that has
+     * more than one.
+     * @param grid the sudoku grid
+     * @param limit the maximum number of solutions to return, at least 1
+     * @return the solutions; an empty list if the grid has no solution
+     */
+    public List<Grid> getSolutions(Grid grid, int limit) {
+        List<Grid> result = new ArrayList<Grid>();
+        if (!engine.load(grid))
+            return result;
+        int[][] values = (limit <= solutions.length ? solutions : new int[limit][81]);
+        int count = engine.countSolutions(limit, values);
+        for (int i = 0; i < count; i++)
+            result.add(toGrid(grid, values[i]));
+        return result;
     }
 
     /**
@@ -135,185 +177,16 @@ public class BruteForceAnalysis implements WarningHintProducer {
      * if the grid has no solution.
      */
     boolean analyse(Grid grid, boolean isReverse) {
-        DirectHintProducer hiddenSingle = new HiddenSingle();
-        DirectHintProducer nakedSingle = new NakedSingle();
-        // new Solver(grid).rebuildPotentialValues();
-        return analyse(grid, isReverse, null, hiddenSingle, nakedSingle);
+        return analyse(grid, isReverse, null, null);
     }
 
-    private boolean analyse(Grid grid, boolean isReverse, Random rnd,
-            DirectHintProducer hiddenSingle, DirectHintProducer nakedSingle) {
-        /*
-         * Quick check if every number can be placed in every row, column and block.
-         * This is not necessary in theory, but in practice, some invalid sudoku
-         * may require a too huge number of iterations without this check
-         */
-        if (!isFillable(grid))
-            return false;
-
-        /*
-         * (1) Fill all naked single and hidden single.
-         * Again, not necessary in theory (pure brute-force would be enough),
-         * but some 17-clued sudoku would require too many iterations without it.
-         */
-        Hint hint = null;
-        do {
-            if (hint != null)
-                hint.apply(grid);
-            SingleHintAccumulator accu = new SingleHintAccumulator();
-            try {
-                nakedSingle.getHints(grid, accu);
-                hiddenSingle.getHints(grid, accu);
-            } catch (InterruptedException ex) {}
-            hint = accu.getHint();
-        } while (hint != null);
-        if (isSolved(grid))
-            return true;
-        /*
-         * (2) Look for the cell with the least number of potentials.
-         * Seems to give the best results (in term of speed) empirically
-         */
-        Cell leastCell = null;
-        int leastCardinality = 10;
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell cell = grid.getCell(x, y);
-                if (cell.getValue() == 0) {
-                    int cardinality = cell.getPotentialValues().cardinality();
-                    if (cardinality < leastCardinality) {
-                        leastCardinality = cardinality;
-                        leastCell = cell;
-                    }
-                }
-            }
-        }
-        // (3) Try each possible value for that cell
-        Grid savePoint = new Grid();
-        int startValue = (isReverse ? 8 : 0);
-        int stopValue = (isReverse ? -1 : 9);
-        int delta = (isReverse ? -1 : 1);
-        int firstValue = 0;
-        if (rnd != null)
-            firstValue = rnd.nextInt(9);
-        for (int value0 = startValue; value0 != stopValue; value0 += delta) {
-            int value = value0 + 1;
-            if (rnd != null) // Combine with random choice if random generator given
-                value = ((value0 + firstValue) % 9) + 1;
-            if (leastCell.hasPotentialValue(value)) {
-                grid.copyTo(savePoint);
-                leastCell.setValueAndCancel(value);
-                boolean result = analyse(grid, isReverse, rnd, hiddenSingle, nakedSingle);
-                if (result)
-                    return true;
-                // Restore savepoint and continue with next value, if any
-                savePoint.copyTo(grid);
-            }
-        }
-        // Failed
-        return false;
-    }
-
-    // 1to9only: code improvement! to respond to Stop button
-
-    private boolean analyse(Generator generator, Grid grid, boolean isReverse, Random rnd,
-            DirectHintProducer hiddenSingle, DirectHintProducer nakedSingle) {
-        /*
-         * Quick check if every number can be placed in every row, column and block.
-         * This is not necessary in theory, but in practice, some invalid sudoku
-         * may require a too huge number of iterations without this check
-         */
-        if (!isFillable(grid))
+    private boolean analyse(Grid grid, boolean isReverse, Random rnd, Generator generator) {
+        if (!engine.load(grid) || !engine.solve(isReverse, rnd, generator))
             return false;
-
-        /*
-         * (1) Fill all naked single and hidden single.
-         * Again, not necessary in theory (pure brute-force would be enough),
-         * but some 17-clued sudoku would require too many iterations without it.
-         */
-        Hint hint = null;
-        do {
-            if (hint != null)
-                hint.apply(grid);
-            SingleHintAccumulator accu = new SingleHintAccumulator();
-            try {
-                nakedSingle.getHints(grid, accu);
-                hiddenSingle.getHints(grid, accu);
-            } catch (InterruptedException ex) {}
-            hint = accu.getHint();
-        } while (hint != null);
-        if (isSolved(grid))
-            return true;
-        /*
-         * (2) Look for the cell with the least number of potentials.
-         * Seems to give the best results (in term of speed) empirically
-         */
-        Cell leastCell = null;
-        int leastCardinality = 10;
-        for (int y = 0; y < 9; y++) {
-            for (int x = 0; x < 9; x++) {
-                Cell cell = grid.getCell(x, y);
-                if (cell.getValue() == 0) {
-                    int cardinality = cell.getPotentialValues().cardinality();
-                    if (cardinality < leastCardinality) {
-                        leastCardinality = cardinality;
-                        leastCell = cell;
-                    }
-                }
-            }
-        }
-        // (3) Try each possible value for that cell
-        Grid savePoint = new Grid();
-        int startValue = (isReverse ? 8 : 0);
-        int stopValue = (isReverse ? -1 : 9);
-        int delta = (isReverse ? -1 : 1);
-        int firstValue = 0;
-        if (rnd != null)
-            firstValue = rnd.nextInt(9);
-        for (int value0 = startValue; value0 != stopValue; value0 += delta) {
-            int value = value0 + 1;
-            if (rnd != null) // Combine with random choice if random generator given
-                value = ((value0 + firstValue) % 9) + 1;
-            if (leastCell.hasPotentialValue(value)) {
-                grid.copyTo(savePoint);
-                leastCell.setValueAndCancel(value);
-                if ( generator.isButtonStopped() ) {
-                    return false;
-                }
-                boolean result = analyse(generator, grid, isReverse, rnd, hiddenSingle, nakedSingle);
-                if (result)
-                    return true;
-                // Restore savepoint and continue with next value, if any
-                savePoint.copyTo(grid);
-            }
-        }
-        // Failed
-        return false;
-    }
-
-    /**
-     * Check that every missing values can be placed in every column,
-     * row and block. The test use the current state of the grid and
-     * its cells.
-     * @param grid the grid to check
-     * @return <tt>false</tt> if at least one value cannot be placed in
-     * a region (column, row or block). Else, <tt>true</tt> is returned,
-     * but it does not mean the sudoku has a solution. Only <tt>false</tt>
-     * imply that the sudoku has no solution.
-     */
-    private boolean isFillable(Grid grid) {
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
-            Grid.Region[] regions = grid.getRegions(regionType);
-            int regionmax = grid.getRegionMax(regionType);
-            for (int i = 0; i < regionmax; i++) {
-                Grid.Region region = regions[i];
-              if ( region != null ) {
-                for (int value = 1; value <= 9; value++) {
-                    if (!region.contains(value) && region.getPotentialPositions(value).isEmpty())
-                        return false; // No room for the value in the region
-                }
-              }
-            }
-        }
+        int[] solution = solutions[0];
+        for (int cell = 0; cell < 81; cell++)
+            solution[cell] = engine.getValue(cell);
+        fill(grid, solution);
         return true;
     }
 
@@ -329,10 +202,8 @@ public class BruteForceAnalysis implements WarningHintProducer {
      * the grid has no solution.
      */
     public boolean solveRandom(Generator generator, Grid grid, Random rnd) {
-        DirectHintProducer hiddenSingle = new HiddenSingle();
-        DirectHintProducer nakedSingle = new NakedSingle();
-        new Solver(grid).rebuildPotentialValues();
-        boolean result = analyse(generator, grid, false, rnd, hiddenSingle, nakedSingle);
+        SinglesPropagator.rebuildPotentials(grid);
+        boolean result = analyse(grid, false, rnd, generator);
         if ( generator.isButtonStopped() ) {
             return false;
         }
@@ -0,0 +1,68 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import java.util.*;
+
+import diuf.sudoku.*;
+import diuf.sudoku.generator.*;
+
+/**
+ * Interface for the search engines of {@link BruteForceAnalysis}.
+ * <p>
+ * An engine first loads the values and potential values of a grid, then
+ * searches for one solution, or counts the solutions up to a limit. The
+ * regions of the grid's variant must be taken into account.
+ * <p>
+ * Engines are reusable, but not thread-safe.
+ * @see BitboardSolver
+ * @see DancingLinksSolver
+ */
+public interface BruteForceEngine {
+
+    /**
+     * Load the values and potential values of a grid.
+     * @param grid the grid to load
+     * @return <tt>false</tt> if the grid has the same value twice in a
+     * region; <tt>true</tt> else
+     */
+    public boolean load(Grid grid);
+
+    /**
+     * Search for a solution of the loaded grid.
+     * <p>
+     * Searching in both directions gives the same solution if, and only if,
+     * the sudoku has exactly one solution. If a random number generator is
+     * given, the branches are tried in a random order instead.
+     * @param isReverse whether to try the branches in reverse order
+     * @param rnd the random number generator, or <tt>null</tt>
+     * @param generator the generator to check for the stop button, or
+     * <tt>null</tt>
+     * @return whether a solution has been found. If so, it can be retrieved
+     * with {@link #getValue(int)}.
+     */
+    public boolean solve(boolean isReverse, Random rnd, Generator generator);
+
+    /**
+     * Count the solutions of the loaded grid, in a single search that
+     * stops as soon as <tt>limit</tt> solutions have been found.
+     * @param limit the maximum number of solutions to look for, at least 1
+     * @param solutions if not <tt>null</tt>, the values of the first
+     * solutions are copied to these arrays of 81 values, up to the number
+     * of arrays
+     * @return the number of solutions found, between 0 and <tt>limit</tt>
+     */
+    public int countSolutions(int limit, int[][] solutions);
+
+    /**
+     * Get the value of a cell in the solution found by the last call to
+     * {@link #solve(boolean, Random, Generator)}.
+     * @param cell the index of the cell (<tt>y * 9 + x</tt>)
+     * @return the value of the cell
+     */
+    public int getValue(int cell);
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import java.util.*;
+
+import diuf.sudoku.*;
+import diuf.sudoku.generator.*;
+
+/**
+ * {@link BruteForceEngine} solving the sudoku as an exact cover problem,
+ * using Knuth's Algorithm X with dancing links.
+ * <p>
+ * The constraints (columns of the matrix) are:
+ * <ul>
+ * <li>Each cell holds exactly one value
+ * <li>Each region holds each value exactly once, for every region of the
+ * grid's {@link Topology}: rows, columns, blocks, and the regions of the
+ * variant (diagonals, disjoint groups, windoku, custom...)
+ * </ul>
+ * Each potential value of each cell is a row of the matrix, covering
+ * its cell constraint and one constraint per region of the cell. The search
+ * branches on the constraint with the fewest rows, which can be a cell or
+ * a value within a region. That makes this engine more robust than
+ * {@link BitboardSolver} on grids with very few clues or irregular regions.
+ * <p>
+ * The links are held in preallocated int arrays, reused from one grid to
+ * the next.
+ */
+public final class DancingLinksSolver implements BruteForceEngine {
+
+    private static final int ROOT = 0;
+
+    // Nodes: the root, then the column headers, then the nodes of the rows
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] up = new int[0];
+    private int[] down = new int[0];
+    private int[] column = new int[0];
+    private int[] row = new int[0];
+    // Number of rows of each column, indexed by column header node
+    private int[] size = new int[0];
+    private int nodeCount;
+
+    // First node of each row (cell * 9 + value - 1), or 0 if the row is absent
+    private final int[] rowNodes = new int[81 * 9];
+    private final int[] givens = new int[81];
+    private final int[] solution = new int[81];
+    private final int[] partial = new int[81];
+    private boolean isLoaded = false;
+
+    // Parameters and results of the current search
+    private Generator generator = null;
+    private boolean isReverse;
+    private Random rnd;
+    private int limit;
+    private int[][] solutions;
+    private int count;
+
+    public boolean load(Grid grid) {
+        Topology topology = grid.getTopology();
+        int columnCount = 81 + topology.getRegionCount() * 9;
+        // Count the nodes
+        int nodes = 1 + columnCount;
+        for (int cell = 0; cell < 81; cell++) {
+            Cell gridCell = grid.getCell(cell % 9, cell / 9);
+            int rows = (gridCell.getValue() != 0 ? 1 : gridCell.getPotentialValuesCount());
+            nodes += rows * (1 + topology.getCellRegions(cell).length);
+        }
+        if (nodes > left.length) {
+            left = new int[nodes];
+            right = new int[nodes];
+            up = new int[nodes];
+            down = new int[nodes];
+            column = new int[nodes];
+            row = new int[nodes];
+            size = new int[nodes];
+        }
+        // Column headers
+        for (int header = 0; header <= columnCount; header++) {
+            left[header] = (header == 0 ? columnCount : header - 1);
+            right[header] = (header == columnCount ? 0 : header + 1);
+            up[header] = header;
+            down[header] = header;
+            column[header] = header;
+            size[header] = 0;
+        }
+        nodeCount = columnCount + 1;
+        // Rows
+        for (int cell = 0; cell < 81; cell++) {
+            Cell gridCell = grid.getCell(cell % 9, cell / 9);
+            int value = gridCell.getValue();
+            givens[cell] = value;
+            int mask = (value != 0 ? 1 << value : gridCell.getPotentialValuesMask());
+            int[] regions = topology.getCellRegions(cell);
+            for (int v = 1; v <= 9; v++) {
+                int rowIndex = cell * 9 + v - 1;
+                if ((mask & (1 << v)) == 0) {
+                    rowNodes[rowIndex] = 0;
+                    continue;
+                }
+                int first = nodeCount;
+                rowNodes[rowIndex] = first;
+                addNode(first, 1 + cell, rowIndex);
+                for (int region : regions)
+                    addNode(first, 1 + 81 + region * 9 + v - 1, rowIndex);
+            }
+        }
+        // Select the rows of the cells that already have a value
+        isLoaded = true;
+        for (int cell = 0; cell < 81; cell++) {
+            int value = givens[cell];
+            if (value != 0) {
+                int first = rowNodes[cell * 9 + value - 1];
+                // A covered column means the value is already in a region
+                for (int node = first; ; ) {
+                    if (isCovered(column[node]))
+                        isLoaded = false;
+                    node = right[node];
+                    if (node == first)
+                        break;
+                }
+                if (!isLoaded)
+                    return false;
+                selectRow(first);
+            }
+        }
+        return true;
+    }
+
+    private void addNode(int first, int header, int rowIndex) {
+        int node = nodeCount++;
+        column[node] = header;
+        row[node] = rowIndex;
+        // Vertical: at the bottom of the column
+        up[node] = up[header];
+        down[node] = header;
+        down[up[header]] = node;
+        up[header] = node;
+        size[header]++;
+        // Horizontal: at the end of the row
+        if (node == first) {
+            left[node] = node;
+            right[node] = node;
+        } else {
+            left[node] = left[first];
+            right[node] = first;
+            right[left[first]] = node;
+            left[first] = node;
+        }
+    }
+
+    private boolean isCovered(int header) {
+        return right[left[header]] != header;
+    }
+
+    private void cover(int header) {
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+        for (int i = down[header]; i != header; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int header) {
+        for (int i = up[header]; i != header; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[header]] = header;
+        left[right[header]] = header;
+    }
+
+    private void selectRow(int node) {
+        cover(column[node]);
+        for (int j = right[node]; j != node; j = right[j])
+            cover(column[j]);
+    }
+
+    public boolean solve(boolean isReverse, Random rnd, Generator generator) {
+        this.generator = generator;
+        try {
+            return search(1, null, isReverse, rnd) > 0;
+        } finally {
+            this.generator = null;
+        }
+    }
+
+    public int countSolutions(int limit, int[][] solutions) {
+        return search(limit, solutions, false, null);
+    }
+
+    private int search(int limit, int[][] solutions, boolean isReverse, Random rnd) {
+        this.limit = limit;
+        this.solutions = solutions;
+        this.isReverse = isReverse;
+        this.rnd = rnd;
+        this.count = 0;
+        try {
+            if (isLoaded)
+                search(0);
+            return count;
+        } finally {
+            this.solutions = null;
+            this.rnd = null;
+        }
+    }
+
+    /**
+     * Search for the exact covers of the remaining columns.
+     * @return whether the search must stop, that is, whether the limit has
+     * been reached or the generator has been stopped
+     */
+    private boolean search(int depth) {
+        if (right[ROOT] == ROOT) {
+            // Solved
+            System.arraycopy(givens, 0, solution, 0, 81);
+            for (int i = 0; i < depth; i++)
+                solution[partial[i] / 9] = partial[i] % 9 + 1;
+            if (solutions != null && count < solutions.length)
+                System.arraycopy(solution, 0, solutions[count], 0, 81);
+            count++;
+            return count >= limit;
+        }
+        // Branch on the column with the fewest rows
+        int best = right[ROOT];
+        for (int header = right[best]; header != ROOT && size[best] > 1; header = right[header]) {
+            if (size[header] < size[best])
+                best = header;
+        }
+        int rows = size[best];
+        if (rows == 0)
+            return false;
+        cover(best);
+        boolean isStopped = false;
+        int node = (isReverse ? up[best] : down[best]);
+        if (rnd != null) {
+            for (int skip = rnd.nextInt(rows); skip > 0; skip--)
+                node = down[node];
+        }
+        for (int tried = 0; tried < rows && !isStopped; tried++) {
+            if (node == best)
+                node = (isReverse ? up[node] : down[node]); // Skip the header
+            partial[depth] = row[node];
+            for (int j = right[node]; j != node; j = right[j])
+                cover(column[j]);
+            if (generator != null && generator.isButtonStopped())
+                isStopped = true;
+            else
+                isStopped = search(depth + 1);
+            for (int j = left[node]; j != node; j = left[j])
+                uncover(column[j]);
+            node = (isReverse ? up[node] : down[node]);
+        }
+        uncover(best);
+        return isStopped;
+    }
+
+    public int getValue(int cell) {
+        return solution[cell];
+    }
+
+}
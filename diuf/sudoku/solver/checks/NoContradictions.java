@@ -0,0 +1,65 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import diuf.sudoku.*;
+import diuf.sudoku.solver.*;
+
+/**
+ * Cheap check that a sudoku has no solution, run before the
+ * {@link BruteForceAnalysis}.
+ * <p>
+ * The potential values are computed from the values of the cells only, and
+ * the singles are propagated with {@link SinglesPropagator}. A cell without
+ * potential value, or a value that has no position left in a region, means
+ * that the sudoku has no solution. The potential values of the grid are not
+ * used, so that potential values wrongly removed by the user are still
+ * reported by the brute-force analysis.
+ * <p>
+ * The values must not appear twice in a region; this is checked before by
+ * {@link NoDoubles}.
+ */
+public class NoContradictions implements WarningHintProducer {
+
+    private static final int ALL_VALUES = 0x3FE;
+
+    private final int[] values = new int[81];
+    private final int[] potentials = new int[81];
+
+    public void getHints(Grid grid, HintsAccumulator accu)
+            throws InterruptedException {
+        if (!isValid(grid)) {
+            WarningMessage message = new WarningMessage(this, "The Sudoku has no solution",
+            "NoSolution.html");
+            accu.add(message);
+        }
+    }
+
+    public boolean isValid(Grid grid) {
+        Topology topology = grid.getTopology();
+        for (int cell = 0; cell < 81; cell++)
+            values[cell] = grid.getCellValue(cell % 9, cell / 9);
+        for (int cell = 0; cell < 81; cell++) {
+            int value = values[cell];
+            if (value != 0) {
+                potentials[cell] = 1 << value;
+            } else {
+                int mask = ALL_VALUES;
+                for (int peer : topology.getPeers(cell))
+                    mask &= ~(1 << values[peer]);
+                potentials[cell] = mask;
+            }
+        }
+        return SinglesPropagator.propagate(values, potentials, topology)
+                != SinglesPropagator.CONTRADICTION;
+    }
+
+    @Override
+    public String toString() {
+        return "Contradictions";
+    }
+
+}
@@ -21,7 +21,7 @@ public class NoDoubles implements WarningHintProducer {
     public void getHints(Grid grid, HintsAccumulator accu)
             throws InterruptedException {
         // Iterate on region types
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region[] regions = grid.getRegions(regionType);
             int regionmax = grid.getRegionMax(regionType);
             // Iterate on occurances of a region
@@ -58,7 +58,8 @@ public class NoDoubles implements WarningHintProducer {
                                     return new Region[] {region};
                                 }
                             };
-                            accu.add(message);
+                            if (accu.add(message))
+                                return;
                         } else
                             values.set(value);
                     }
@@ -70,7 +71,7 @@ public class NoDoubles implements WarningHintProducer {
 
     public boolean isValid(Grid grid) {
         // Iterate on region types
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region[] regions = grid.getRegions(regionType);
             int regionmax = grid.getRegionMax(regionType);
             // Iterate on occurances of a region
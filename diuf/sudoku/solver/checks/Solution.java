@@ -16,9 +16,6 @@ public class Solution implements WarningHintProducer {
 
     public void getHints(Grid grid, HintsAccumulator accu)
             throws InterruptedException {
-        Grid solution = new Grid();
-        grid.copyTo(solution);
-
         // First check for no, or multiple solution
         BruteForceAnalysis analyser = new BruteForceAnalysis(true);
         analyser.getHints(grid, accu);
@@ -0,0 +1,228 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import diuf.sudoku.*;
+
+/**
+ * Parallel enumeration of the solutions of a grid, up to a cap.
+ * <p>
+ * The search tree is split at its top branching levels: each value of the
+ * branching cell becomes a task of a {@link ForkJoinPool}. Below
+ * {@link #SPLIT_LEVELS}, each task runs the sequential search of a
+ * {@link BitboardSolver}, one per worker thread. The regions are taken from
+ * the {@link Topology} of the grid, so that all the variants are supported.
+ * <p>
+ * The solutions are counted, and optionally passed to a {@link Sink}.
+ * The search stops as soon as the cap is reached.
+ * <p>
+ * Instances are immutable and can be shared; each call to
+ * {@link #enumerate(Grid, long, Sink)} is a separate search.
+ */
+public final class SolutionEnumerator {
+
+    /**
+     * Receiver of the solutions found by {@link SolutionEnumerator}.
+     * <p>
+     * The method is called concurrently by the worker threads, and never
+     * more times than the cap.
+     */
+    public interface Sink {
+
+        /**
+         * Called for each solution.
+         * @param values the values of the 81 cells (<tt>y * 9 + x</tt>).
+         * The array is only valid during the call.
+         */
+        public void solution(int[] values);
+
+    }
+
+    /**
+     * Number of branching levels that are split into separate tasks.
+     */
+    private static final int SPLIT_LEVELS = 4;
+
+    private static final ThreadLocal<BitboardSolver> engines = new ThreadLocal<BitboardSolver>() {
+        @Override
+        protected BitboardSolver initialValue() {
+            return new BitboardSolver();
+        }
+    };
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new enumerator running in the common pool, which uses all
+     * the available processors.
+     */
+    public SolutionEnumerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new enumerator running in the given pool.
+     */
+    public SolutionEnumerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Count the solutions of a grid, up to a cap.
+     * @param grid the grid. Its values and potential values are used.
+     * @param cap the maximum number of solutions to count
+     * @return the number of solutions, between 0 and <tt>cap</tt>
+     */
+    public long countSolutions(Grid grid, long cap) {
+        return enumerate(grid, cap, null);
+    }
+
+    /**
+     * Enumerate the solutions of a grid, up to a cap.
+     * @param grid the grid. Its values and potential values are used.
+     * @param cap the maximum number of solutions to enumerate
+     * @param sink the receiver of the solutions, or <tt>null</tt> to only
+     * count them
+     * @return the number of solutions, between 0 and <tt>cap</tt>
+     */
+    public long enumerate(Grid grid, long cap, Sink sink) {
+        if (cap <= 0)
+            return 0;
+        BitboardSolver engine = engines.get();
+        if (!engine.load(grid))
+            return 0;
+        int[] state = new int[BitboardSolver.STATE_SIZE];
+        engine.getState(state);
+        Search search = new Search(engine.getTopology(), cap, sink);
+        pool.invoke(new Branch(search, state, 0));
+        return search.count.get();
+    }
+
+    /**
+     * The shared state of one enumeration.
+     */
+    private static final class Search {
+
+        private final Topology topology;
+        private final long cap;
+        private final Sink sink;
+        private final AtomicLong count = new AtomicLong();
+        private volatile boolean isStopped = false;
+
+        private Search(Topology topology, long cap, Sink sink) {
+            this.topology = topology;
+            this.cap = cap;
+            this.sink = sink;
+        }
+
+        /**
+         * Count a solution, unless the cap has already been reached.
+         * @return whether the search must stop
+         */
+        private boolean found(int[] values) {
+            long current;
+            do {
+                current = count.get();
+                if (current >= cap) {
+                    isStopped = true;
+                    return true;
+                }
+            } while (!count.compareAndSet(current, current + 1));
+            if (sink != null)
+                sink.solution(values);
+            if (current + 1 >= cap)
+                isStopped = true;
+            return isStopped;
+        }
+
+    }
+
+    /**
+     * Task searching the solutions below a state.
+     */
+    private static final class Branch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int[] state;
+        private final int level;
+
+        private Branch(Search search, int[] state, int level) {
+            this.search = search;
+            this.state = state;
+            this.level = level;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.isStopped)
+                return;
+            BitboardSolver engine = engines.get();
+            engine.setState(search.topology, state);
+            if (level >= SPLIT_LEVELS) {
+                engine.enumerate(new Callback(search));
+                return;
+            }
+            int cell = engine.propagateAndGetBranchCell();
+            if (cell == -2)
+                return; // Contradiction
+            if (cell == -1) {
+                engine.getState(state);
+                search.found(Arrays.copyOf(state, 81));
+                return;
+            }
+            // One task for each potential value of the branching cell
+            int[] branchState = new int[BitboardSolver.STATE_SIZE];
+            engine.getState(branchState);
+            int cellPotentials = engine.getPotentials(cell);
+            List<Branch> branches = new ArrayList<Branch>();
+            for (int value = 1; value <= 9; value++) {
+                if ((cellPotentials & (1 << value)) != 0) {
+                    engine.setState(search.topology, branchState);
+                    if (engine.assignValue(cell, value)) {
+                        int[] childState = new int[BitboardSolver.STATE_SIZE];
+                        engine.getState(childState);
+                        branches.add(new Branch(search, childState, level + 1));
+                    }
+                }
+            }
+            invokeAll(branches);
+        }
+
+    }
+
+    /**
+     * Link between the sequential search of a {@link BitboardSolver} and
+     * an enumeration.
+     */
+    static final class Callback {
+
+        private final Search search;
+
+        private Callback(Search search) {
+            this.search = search;
+        }
+
+        /**
+         * Called by the engine for each solution.
+         * @return whether the search must stop
+         */
+        boolean found(int[] values) {
+            return search.found(values);
+        }
+
+        boolean isStopped() {
+            return search.isStopped;
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.checks;
+
+import diuf.sudoku.*;
+import diuf.sudoku.generator.*;
+
+/**
+ * Incremental uniqueness check for the removal of clues from a sudoku whose
+ * solution is known.
+ * <p>
+ * The known solution is used as a witness. If a puzzle has a unique
+ * solution, and some clues are removed from it, any other solution of the
+ * new puzzle must differ from the witness in at least one of the removed
+ * cells. Hence only these cases are searched, each one with the value of
+ * the witness excluded from one removed cell, and the witness values set in
+ * the removed cells before it, so that the cases do not overlap. The search
+ * stops at the first solution found.
+ * <p>
+ * The clues and the potential values they leave are kept from one removal
+ * to the next, and only the cells around the removed clues are updated.
+ * <p>
+ * Instances are reusable, but not thread-safe.
+ */
+public final class UniquenessChecker {
+
+    private static final int ALL_VALUES = 0x3FE;
+
+    private final BitboardSolver engine = new BitboardSolver();
+    private Topology topology;
+    private final int[] witness = new int[81];
+    // The current puzzle: values of the clues, then potential values
+    private final int[] clues = new int[BitboardSolver.STATE_SIZE];
+    // The current puzzle, with the singles propagated
+    private final int[] propagated = new int[BitboardSolver.STATE_SIZE];
+    private final int[] removed = new int[81];
+    private boolean isWitnessUnique;
+
+    /**
+     * Start the removal of clues from a puzzle.
+     * @param puzzle the puzzle. Only its values are used.
+     * @param solution the solution of the puzzle, used as the witness
+     */
+    public void reset(Grid puzzle, Grid solution) {
+        topology = puzzle.getTopology();
+        for (int cell = 0; cell < 81; cell++) {
+            witness[cell] = solution.getCellValue(cell % 9, cell / 9);
+            clues[cell] = puzzle.getCellValue(cell % 9, cell / 9);
+        }
+        for (int cell = 0; cell < 81; cell++)
+            updatePotentials(cell);
+        // The witness can only be used if the starting puzzle is unique
+        engine.setState(topology, clues);
+        isWitnessUnique = (engine.countSolutions(2, null) == 1);
+    }
+
+    /**
+     * Remove the clues of the given cells, if the puzzle still has a unique
+     * solution without them. Cells that are not clues are ignored.
+     * @param points the cells
+     * @return whether the clues have been removed; if not, the puzzle is
+     * left unchanged
+     */
+    public boolean removeClues(Point[] points) {
+        int count = 0;
+        for (Point p : points) {
+            int cell = p.y * 9 + p.x;
+            if (clues[cell] != 0) {
+                clues[cell] = 0;
+                removed[count++] = cell;
+            }
+        }
+        if (count == 0)
+            return false;
+        for (int i = 0; i < count; i++)
+            updatePeerPotentials(removed[i]);
+        if (isUnique(count))
+            return true;
+        // Put the clues back
+        for (int i = 0; i < count; i++) {
+            int cell = removed[i];
+            clues[cell] = witness[cell];
+            updatePeerPotentials(cell);
+        }
+        return false;
+    }
+
+    private boolean isUnique(int count) {
+        engine.setState(topology, clues);
+        if (!isWitnessUnique)
+            return engine.countSolutions(2, null) == 1;
+        int cell = engine.propagateAndGetBranchCell();
+        if (cell == -1)
+            return true; // Solved by singles: the witness is the only solution
+        engine.getState(propagated);
+        for (int i = 0; i < count; i++) {
+            // Other solutions with the witness values in the first i removed cells
+            engine.setState(topology, propagated);
+            boolean isPossible = true;
+            for (int j = 0; j < i && isPossible; j++) {
+                int other = removed[j];
+                if (engine.getValue(other) == 0)
+                    isPossible = engine.assignValue(other, witness[other]);
+            }
+            int target = removed[i];
+            if (isPossible && engine.getValue(target) == 0
+                    && engine.excludeValue(target, witness[target])
+                    && engine.countSolutions(1, null) > 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compute the potential values of the given cell and of its peers.
+     */
+    private void updatePeerPotentials(int cell) {
+        updatePotentials(cell);
+        for (int peer : topology.getPeers(cell))
+            updatePotentials(peer);
+    }
+
+    /**
+     * Compute the potential values of the given cell from the clues of its
+     * peers.
+     */
+    private void updatePotentials(int cell) {
+        int value = clues[cell];
+        if (value != 0) {
+            clues[81 + cell] = 1 << value;
+        } else {
+            int mask = ALL_VALUES;
+            for (int peer : topology.getPeers(cell))
+                mask &= ~(1 << clues[peer]);
+            clues[81 + cell] = mask;
+        }
+    }
+
+}
@@ -36,12 +36,13 @@ public class AlignedExclusion implements IndirectHintProducer {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell cell = grid.getCell(x, y);
-                if (cell.getPotentialValues().cardinality() >= 2) { // 2 <-> degree
+                if (cell.getPotentialValuesCount() >= 2) { // 2 <-> degree
                     boolean hasNakedSingle = false;
                     // Look for potentially excluding cells (whose number of candidates <= degree)
                     Collection<Cell> excludingCells = new ArrayList<Cell>();
-                    for (Cell excludingCell : cell.getHouseCells()) {
-                        int exclCardinality = excludingCell.getPotentialValues().cardinality();
+                    for (int peer : grid.getTopology().getPeers(cell.getIndex())) {
+                        Cell excludingCell = grid.getCell(peer);
+                        int exclCardinality = excludingCell.getPotentialValuesCount();
                         if (exclCardinality == 1)
                             hasNakedSingle = true;
                         else if (exclCardinality >= 2 && exclCardinality <= degree)
@@ -77,9 +78,9 @@ public class AlignedExclusion implements IndirectHintProducer {
             int[] indexes = cellSetPerm2.nextBitNums();
             // Setup the first two cells
             Cell cell0 = candidateList.get(indexes[0]);
-            int card0 = cell0.getPotentialValues().cardinality();
+            int card0 = cell0.getPotentialValuesCount();
             Cell cell1 = candidateList.get(indexes[1]);
-            int card1 = cell1.getPotentialValues().cardinality();
+            int card1 = cell1.getPotentialValuesCount();
 
             // Create the twinArea: set of cells visible by one of the two first cells
             Collection<Cell> twinArea = new LinkedHashSet<Cell>(cellExcluders.get(cell0));
@@ -109,7 +110,7 @@ public class AlignedExclusion implements IndirectHintProducer {
 //a                 assert tindexes.length == degree - 2;
                     for (int i = 0; i < tindexes.length; i++) {
                         cells[i + 2] = tailCells.get(tindexes[i]);
-                        cardinalities[i + 2] = cells[i + 2].getPotentialValues().cardinality();
+                        cardinalities[i + 2] = cells[i + 2].getPotentialValuesCount();
                     }
 
                     // Build the list of common excluding cells for the base cells 'cells'
@@ -172,7 +173,7 @@ public class AlignedExclusion implements IndirectHintProducer {
                                      */
                                     Cell c1 = cells[cellIndexes[0]];
                                     Cell c2 = cells[cellIndexes[1]];
-                                    if (c1.getHouseCells().contains(c2)) {
+                                    if (c1.isPeerOf(c2)) {
                                         isAllowed = false;
                                         break;
                                     }
@@ -235,7 +236,8 @@ public class AlignedExclusion implements IndirectHintProducer {
                         IndirectHint hint = new AlignedExclusionHint(this, removablePotentials, cells,
                                 lockedPotentialCombinations);
                         if (hint.isWorth())
-                            accu.add(hint);
+                            if (accu.add(hint))
+                                return;
                     } // if enough common excluders
                 } // Iterate on cell permutations: tail cells
             }
@@ -31,13 +31,14 @@ public class AlignedPairExclusion extends AlignedExclusion {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell cell = grid.getCell(x, y);
-                if (cell.getPotentialValues().cardinality() >= 2) {
+                if (cell.getPotentialValuesCount() >= 2) {
                     boolean hasNakedSingle = false;
                     // Look for potentially excluding cells (whose number of candidates <=
                     // degree)
                     Collection<Cell> excludingCells = new ArrayList<Cell>();
-                    for (Cell excludingCell : cell.getHouseCells()) {
-                        int exclCardinality = excludingCell.getPotentialValues().cardinality();
+                    for (int peer : grid.getTopology().getPeers(cell.getIndex())) {
+                        Cell excludingCell = grid.getCell(peer);
+                        int exclCardinality = excludingCell.getPotentialValuesCount();
                         if (exclCardinality == 1)
                             hasNakedSingle = true;
                         else if (exclCardinality == 2)
@@ -68,9 +69,9 @@ public class AlignedPairExclusion extends AlignedExclusion {
             Cell[] cells = new Cell[2];
             int[] cardinalities = new int[2];
             cells[0] = candidateList.get(indexes[0]);
-            cardinalities[0] = cells[0].getPotentialValues().cardinality();
+            cardinalities[0] = cells[0].getPotentialValuesCount();
             cells[1] = candidateList.get(indexes[1]);
-            cardinalities[1] = cells[1].getPotentialValues().cardinality();
+            cardinalities[1] = cells[1].getPotentialValuesCount();
 
             // Build the list of common excluding cells for the base cells 'cells'
             Set<Cell> commonExcluders = new LinkedHashSet<Cell>();
@@ -95,7 +96,7 @@ public class AlignedPairExclusion extends AlignedExclusion {
                         Cell lockingCell = null;
 
                         // Check if this potential combination is allowed, hidden single rule
-                        if (pt0 == pt1 && cells[0].getHouseCells().contains(cells[1]))
+                        if (pt0 == pt1 && cells[0].isPeerOf(cells[1]))
                             isAllowed = false;
 
                         // Check if this potential combination is allowed, using common
@@ -149,7 +150,8 @@ public class AlignedPairExclusion extends AlignedExclusion {
                 IndirectHint hint = new AlignedExclusionHint(this, removablePotentials,
                         cells, lockedPotentialCombinations);
                 if (hint.isWorth())
-                    accu.add(hint);
+                    if (accu.add(hint))
+                        return;
             } // if enough common excluders
         } // Iterate on cell permutations
 
@@ -0,0 +1,67 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.rules;
+
+import java.util.*;
+
+import diuf.sudoku.*;
+
+/**
+ * The regions in which a hint producer has found no hint, so that they are
+ * not examined again while they have not changed.
+ * <p>
+ * This is only valid for the hint producers whose hints in a region only
+ * depend on the cells of that region. A region is recorded as empty with
+ * the {@link Grid#getChangeCount() change counter} of the grid, and is
+ * skipped until one of its cells changes. Everything is forgotten when
+ * the producer is given another grid, or the variant of the grid changes.
+ * <p>
+ * Instances are not thread-safe; each producer has its own.
+ */
+final class EmptyRegions {
+
+    private Grid grid = null;
+    private Variant variant = null;
+    // Change counter of the last scan that found no hint, by region
+    private final long[] scans = new long[Grid.REGION_TYPE_COUNT * 9];
+
+    EmptyRegions() {
+        Arrays.fill(scans, -1);
+    }
+
+    /**
+     * Start the examination of a grid.
+     * @param grid the grid
+     */
+    void start(Grid grid) {
+        Variant variant = grid.getVariant();
+        if (grid != this.grid || variant != this.variant) {
+            this.grid = grid;
+            this.variant = variant;
+            Arrays.fill(scans, -1);
+        }
+    }
+
+    /**
+     * Get whether a region had no hint when it was last examined, and
+     * has not changed since.
+     */
+    boolean isEmpty(Grid.Region region) {
+        return region.getLastChange() <= scans[getIndex(region)];
+    }
+
+    /**
+     * Record that a region has been examined, and has no hint.
+     */
+    void setEmpty(Grid.Region region) {
+        scans[getIndex(region)] = grid.getChangeCount();
+    }
+
+    private int getIndex(Grid.Region region) {
+        return region.getRegionTypeId() * 9 + region.getRegionNum();
+    }
+
+}
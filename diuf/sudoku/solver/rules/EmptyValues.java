@@ -0,0 +1,70 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2007 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.solver.rules;
+
+import java.util.*;
+
+import diuf.sudoku.*;
+
+/**
+ * The values for which a hint producer has found no hint, so that they
+ * are not examined again while they have not changed.
+ * <p>
+ * This is only valid for the hint producers whose hints for a value only
+ * depend on the potential positions of that value, and on the cells
+ * holding it. A value is recorded as empty with the
+ * {@link Grid#getChangeCount() change counter} of the grid, and is skipped
+ * until its {@link Grid#getLastValueChange(int) potential positions}
+ * change. Everything is forgotten when the producer is given another
+ * grid, or the variant of the grid changes.
+ * <p>
+ * Instances are not thread-safe; each producer has its own.
+ */
+final class EmptyValues {
+
+    private Grid grid = null;
+    private Variant variant = null;
+    // Change counter of the last scan that found no hint, by value
+    private final long[] scans = new long[10];
+
+    EmptyValues() {
+        Arrays.fill(scans, -1);
+    }
+
+    /**
+     * Start the examination of a grid.
+     * @param grid the grid
+     * @return the mask of the values to examine: bit <tt>v</tt> is set if
+     * value <tt>v</tt> has changed since it was last found empty
+     */
+    int start(Grid grid) {
+        Variant variant = grid.getVariant();
+        if (grid != this.grid || variant != this.variant) {
+            this.grid = grid;
+            this.variant = variant;
+            Arrays.fill(scans, -1);
+        }
+        int result = 0;
+        for (int value = 1; value <= 9; value++) {
+            if (grid.getLastValueChange(value) > scans[value])
+                result |= 1 << value;
+        }
+        return result;
+    }
+
+    /**
+     * Record that the given values have been examined, and have no hint.
+     * @param values the mask of the values, as returned by {@link #start(Grid)}
+     */
+    void setEmpty(int values) {
+        long changeCount = grid.getChangeCount();
+        for (int value = 1; value <= 9; value++) {
+            if ((values & (1 << value)) != 0)
+                scans[value] = changeCount;
+        }
+    }
+
+}
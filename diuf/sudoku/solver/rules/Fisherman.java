@@ -24,26 +24,39 @@ import diuf.sudoku.tools.*;
 public class Fisherman implements IndirectHintProducer {
 
     private final int degree;
-
+    private final EmptyValues emptyValues = new EmptyValues();
+    // The values to examine, and those that have hints, in the current search
+    private int values;
+    private int valuesWithHints;
 
     public Fisherman(int degree) {
         this.degree = degree;
     }
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
-        getHints(grid, Grid.Column.class, Grid.Row.class, accu);
-        getHints(grid, Grid.Row.class, Grid.Column.class, accu);
+        // The fishes of a value only depend on its potential positions
+        values = emptyValues.start(grid);
+        valuesWithHints = 0;
+        if (values == 0)
+            return;
+        if (getHints(grid, Grid.COLUMN, Grid.ROW, accu))
+            return;
+        if (getHints(grid, Grid.ROW, Grid.COLUMN, accu))
+            return;
+        emptyValues.setEmpty(values & ~valuesWithHints);
     }
 
-    private <S extends Grid.Region,T extends Grid.Region> void getHints(Grid grid,
-            Class<S> partType1, Class<T> partType2,
+    private boolean getHints(Grid grid,
+            int partType1, int partType2,
             HintsAccumulator accu) throws InterruptedException {
-//a     assert !partType1.equals(partType2);
+//a     assert partType1 != partType2;
 
         // Get occurance count for each value
         int[] occurances = new int[10];
-        for (int value = 1; value <= 9; value++)
-            occurances[value] = grid.getCountOccurancesOfValue(value);
+        for (int value = 1; value <= 9; value++) {
+            if ((values & (1 << value)) != 0)
+                occurances[value] = grid.getCountOccurancesOfValue(value);
+        }
 
         Grid.Region[] parts = grid.getRegions(partType1);
         // Iterate on lines tuples
@@ -61,28 +74,32 @@ public class Fisherman implements IndirectHintProducer {
 
                 // Pattern is only possible if there are at least (degree * 2) missing occurances
                 // of the value.
-                if (occurances[value] + degree * 2 <= 9) {
+                if ((values & (1 << value)) != 0 && occurances[value] + degree * 2 <= 9) {
 
                     // Check for exactly the same positions of the value in all lines
-                    BitSet[] positions = new BitSet[degree];
+                    int[] positions = new int[degree];
                     for (int i = 0; i < degree; i++)
-                        positions[i] = parts[indexes[i]].getPotentialPositions(value);
-                    BitSet common = CommonTuples.searchCommonTuple(positions, degree);
+                        positions[i] = parts[indexes[i]].getPotentialPositionsMask(value);
+                    int common = CommonTuples.searchCommonTuple(positions, degree);
 
-                    if (common != null) {
+                    if (common != 0) {
                         // Potential hint found
                         IndirectHint hint = createFishHint(grid, partType1, partType2,
-                                myIndexes, common, value);
-                        if (hint.isWorth())
-                            accu.add(hint);
+                                myIndexes, BitSet.valueOf(new long[] { common }), value);
+                        if (hint.isWorth()) {
+                            valuesWithHints |= 1 << value;
+                            if (accu.add(hint))
+                                return true;
+                        }
                     }
                 }
             }
         }
+        return false;
     }
 
-    private <S extends Grid.Region,T extends Grid.Region> IndirectHint createFishHint(
-            Grid grid, Class<S> otherPartType, Class<T> myPartType, BitSet otherIndexes,
+    private IndirectHint createFishHint(
+            Grid grid, int otherPartType, int myPartType, BitSet otherIndexes,
             BitSet myIndexes, int value) {
         Grid.Region[] myParts = grid.getRegions(myPartType);
         Grid.Region[] otherParts = grid.getRegions(otherPartType);
@@ -22,6 +22,7 @@ public class HiddenSet implements IndirectHintProducer {
 
     private final int degree;
     private final boolean isDirect;
+    private final EmptyRegions emptyRegions = new EmptyRegions();
 
 
     public HiddenSet(int degree, boolean isDirect) {
@@ -31,28 +32,37 @@ public class HiddenSet implements IndirectHintProducer {
     }
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
+        emptyRegions.start(grid);
       if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, accu);
+        if (getHints(grid, Grid.BLOCK, accu))
+            return;
       }
-        getHints(grid, Grid.Column.class, accu);
-        getHints(grid, Grid.Row.class, accu);
+        if (getHints(grid, Grid.COLUMN, accu))
+            return;
+        if (getHints(grid, Grid.ROW, accu))
+            return;
 
       if ( grid.isDiagonals() ) {
        if ( grid.isXDiagonal() ) {
-        getHints(grid, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, accu))
+            return;
        }
        if ( grid.isXAntiDiagonal() ) {
-        getHints(grid, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, accu))
+            return;
        }
       }
       if ( grid.isDisjointGroups() ) {
-        getHints(grid, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, accu))
+            return;
       }
       if ( grid.isWindoku() ) {
-        getHints(grid, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.WINDOKU, accu))
+            return;
       }
       if ( grid.isCustom() ) {
-        getHints(grid, Grid.Custom.class, accu);
+        if (getHints(grid, Grid.CUSTOM, accu))
+            return;
       }
     }
 
@@ -62,11 +72,14 @@ public class HiddenSet implements IndirectHintProducer {
      * @param regionType the type of the parts to check
      * @param degree the degree of the tuples to search
      */
-    private <T extends Grid.Region> void getHints(Grid grid, Class<T> regionType,
+    private boolean getHints(Grid grid, int regionType,
             HintsAccumulator accu) throws InterruptedException {
         Grid.Region[] regions = grid.getRegions(regionType);
         // Iterate on parts
         for (Grid.Region region : regions) {
+            if (emptyRegions.isEmpty(region))
+                continue;
+            boolean isEmpty = true;
             int nbEmptyCells = region.getEmptyCellCount();
             if (nbEmptyCells > degree * 2 || (isDirect && nbEmptyCells > degree)) {
                 Permutations perm = new Permutations(degree, 9);
@@ -80,22 +93,29 @@ public class HiddenSet implements IndirectHintProducer {
                         values[i] += 1; // 0..8 -> 1..9
 
                     // Build potential positions for each value of the tuple
-                    BitSet[] potentialIndexes = new BitSet[degree];
+                    int[] potentialIndexes = new int[degree];
                     for (int i = 0; i < degree; i++)
-                        potentialIndexes[i] = region.getPotentialPositions(values[i]);
+                        potentialIndexes[i] = region.getPotentialPositionsMask(values[i]);
 
                     // Look for a common tuple of potential positions, with same degree
-                    BitSet commonPotentialPositions =
+                    int commonPotentialPositions =
                         CommonTuples.searchCommonTuple(potentialIndexes, degree);
-                    if (commonPotentialPositions != null) {
+                    if (commonPotentialPositions != 0) {
                         // Hint found
-                        IndirectHint hint = createHiddenSetHint(region, values, commonPotentialPositions);
-                        if (hint != null && hint.isWorth())
-                            accu.add(hint);
+                        IndirectHint hint = createHiddenSetHint(region, values,
+                                BitSet.valueOf(new long[] { commonPotentialPositions }));
+                        if (hint != null && hint.isWorth()) {
+                            isEmpty = false;
+                            if (accu.add(hint))
+                                return true;
+                        }
                     }
                 }
             }
+            if (isEmpty)
+                emptyRegions.setEmpty(region);
         }
+        return false;
     }
 
     private IndirectHint createHiddenSetHint(Grid.Region region, int[] values,
@@ -19,49 +19,65 @@ public class HiddenSingle implements DirectHintProducer {
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
         // First alone cells (last empty cell in a region)
       if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, accu, true);
+        if (getHints(grid, Grid.BLOCK, accu, true))
+            return;
       }
-        getHints(grid, Grid.Column.class, accu, true);
-        getHints(grid, Grid.Row.class, accu, true);
+        if (getHints(grid, Grid.COLUMN, accu, true))
+            return;
+        if (getHints(grid, Grid.ROW, accu, true))
+            return;
       if ( grid.isDiagonals() ) {
        if ( grid.isXDiagonal() ) {
-        getHints(grid, Grid.Diagonal.class, accu, true);
+        if (getHints(grid, Grid.DIAGONAL, accu, true))
+            return;
        }
        if ( grid.isXAntiDiagonal() ) {
-        getHints(grid, Grid.AntiDiagonal.class, accu, true);
+        if (getHints(grid, Grid.ANTIDIAGONAL, accu, true))
+            return;
        }
       }
       if ( grid.isDisjointGroups() ) {
-        getHints(grid, Grid.DisjointGroup.class, accu, true);
+        if (getHints(grid, Grid.DISJOINTGROUP, accu, true))
+            return;
       }
       if ( grid.isWindoku() ) {
-        getHints(grid, Grid.Windoku.class, accu, true);
+        if (getHints(grid, Grid.WINDOKU, accu, true))
+            return;
       }
       if ( grid.isCustom() ) {
-        getHints(grid, Grid.Custom.class, accu, true);
+        if (getHints(grid, Grid.CUSTOM, accu, true))
+            return;
       }
         // Then hidden cells
       if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, accu, false);
+        if (getHints(grid, Grid.BLOCK, accu, false))
+            return;
       }
-        getHints(grid, Grid.Column.class, accu, false);
-        getHints(grid, Grid.Row.class, accu, false);
+        if (getHints(grid, Grid.COLUMN, accu, false))
+            return;
+        if (getHints(grid, Grid.ROW, accu, false))
+            return;
       if ( grid.isDiagonals() ) {
        if ( grid.isXDiagonal() ) {
-        getHints(grid, Grid.Diagonal.class, accu, false);
+        if (getHints(grid, Grid.DIAGONAL, accu, false))
+            return;
        }
        if ( grid.isXAntiDiagonal() ) {
-        getHints(grid, Grid.AntiDiagonal.class, accu, false);
+        if (getHints(grid, Grid.ANTIDIAGONAL, accu, false))
+            return;
        }
       }
       if ( grid.isDisjointGroups() ) {
-        getHints(grid, Grid.DisjointGroup.class, accu, false);
+        if (getHints(grid, Grid.DISJOINTGROUP, accu, false))
+            return;
       }
       if ( grid.isWindoku() ) {
-        getHints(grid, Grid.Windoku.class, accu, false);
+        if (getHints(grid, Grid.WINDOKU, accu, false))
+            return;
       }
       if ( grid.isCustom() ) {
-        getHints(grid, Grid.Custom.class, accu, false);
+        if (getHints(grid, Grid.CUSTOM, accu, false))
+            return;
       }
     }
 
@@ -70,7 +86,7 @@ public class HiddenSingle implements DirectHintProducer {
      * possible potential position.
      * @param regionType the type of the parts to check
      */
-    private <T extends Grid.Region> void getHints(Grid grid, Class<T> regionType,
+    private boolean getHints(Grid grid, int regionType,
             HintsAccumulator accu, boolean aloneOnly) throws InterruptedException {
         Grid.Region[] regions = grid.getRegions(regionType);
         // Iterate on parts
@@ -78,17 +94,19 @@ public class HiddenSingle implements DirectHintProducer {
             // Iterate on values
             for (int value = 1; value <= 9; value++) {
                 // Get value's potential position
-                BitSet potentialIndexes = region.getPotentialPositions(value);
-                if (potentialIndexes.cardinality() == 1) {
+                int potentialIndexes = region.getPotentialPositionsMask(value);
+                if (Integer.bitCount(potentialIndexes) == 1) {
                     // One potential position -> solution found
-                    int uniqueIndex = potentialIndexes.nextSetBit(0);
+                    int uniqueIndex = Integer.numberOfTrailingZeros(potentialIndexes);
                     Cell cell = region.getCell(uniqueIndex);
                     boolean isAlone = region.getEmptyCellCount() == 1;
                     if (isAlone == aloneOnly)
-                        accu.add(new HiddenSingleHint(this, region, cell, value, isAlone));
+                        if (accu.add(new HiddenSingleHint(this, region, cell, value, isAlone)))
+                            return true;
                 }
             }
         }
+        return false;
     }
 
     @Override
@@ -17,116 +17,181 @@ import diuf.sudoku.tools.*;
 public class Locking implements IndirectHintProducer {
 
     private final boolean isDirectMode;
+    private final EmptyValues emptyValues = new EmptyValues();
+    // The values to examine, and those that have hints, in the current search
+    private int values;
+    private int valuesWithHints;
 
     public Locking(boolean isDirectMode) {
         this.isDirectMode = isDirectMode;
     }
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
+        // The intersections of a value only depend on its potential positions
+        values = emptyValues.start(grid);
+        valuesWithHints = 0;
+        if (values == 0)
+            return;
+        if (getAllHints(grid, accu))
+            return;
+        emptyValues.setEmpty(values & ~valuesWithHints);
+    }
+
+    private boolean getAllHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, Grid.Column.class, accu);
-        getHints(grid, Grid.Block.class, Grid.Row.class, accu);
-        getHints(grid, Grid.Column.class, Grid.Block.class, accu);
-        getHints(grid, Grid.Row.class, Grid.Block.class, accu);
+        if (getHints(grid, Grid.BLOCK, Grid.COLUMN, accu))
+            return true;
+        if (getHints(grid, Grid.BLOCK, Grid.ROW, accu))
+            return true;
+        if (getHints(grid, Grid.COLUMN, Grid.BLOCK, accu))
+            return true;
+        if (getHints(grid, Grid.ROW, Grid.BLOCK, accu))
+            return true;
        }
 
       if ( grid.isDiagonals() ) {
        if ( !grid.isLatinSquare() ) {
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Block.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.BLOCK, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.Block.class, Grid.AntiDiagonal.class, accu); }
+        if (getHints(grid, Grid.BLOCK, Grid.ANTIDIAGONAL, accu))
+            return true; }
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Column.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.COLUMN, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.Column.class, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.COLUMN, Grid.ANTIDIAGONAL, accu))
+            return true;
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Row.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.ROW, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.Row.class, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.ROW, Grid.ANTIDIAGONAL, accu))
+            return true;
        if ( !grid.isLatinSquare() ) {
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.Block.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.BLOCK, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.Block.class, accu); }
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.BLOCK, accu))
+            return true; }
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.Column.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.COLUMN, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.Column.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.COLUMN, accu))
+            return true;
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.Row.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.ROW, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.Row.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.ROW, accu))
+            return true;
       }
 
       if ( grid.isDisjointGroups() ) {
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, Grid.DisjointGroup.class, accu); }
-        getHints(grid, Grid.Column.class, Grid.DisjointGroup.class, accu);
-        getHints(grid, Grid.Row.class, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.BLOCK, Grid.DISJOINTGROUP, accu))
+            return true; }
+        if (getHints(grid, Grid.COLUMN, Grid.DISJOINTGROUP, accu))
+            return true;
+        if (getHints(grid, Grid.ROW, Grid.DISJOINTGROUP, accu))
+            return true;
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.DisjointGroup.class, Grid.Block.class, accu); }
-        getHints(grid, Grid.DisjointGroup.class, Grid.Column.class, accu);
-        getHints(grid, Grid.DisjointGroup.class, Grid.Row.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.BLOCK, accu))
+            return true; }
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.COLUMN, accu))
+            return true;
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.ROW, accu))
+            return true;
        if ( grid.isDiagonals() ) {
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.DISJOINTGROUP, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.DISJOINTGROUP, accu))
+            return true;
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.DisjointGroup.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.DisjointGroup.class, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.ANTIDIAGONAL, accu))
+            return true;
        }
       }
 
       if ( grid.isWindoku() ) {
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, Grid.Windoku.class, accu); }
-        getHints(grid, Grid.Column.class, Grid.Windoku.class, accu);
-        getHints(grid, Grid.Row.class, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.BLOCK, Grid.WINDOKU, accu))
+            return true; }
+        if (getHints(grid, Grid.COLUMN, Grid.WINDOKU, accu))
+            return true;
+        if (getHints(grid, Grid.ROW, Grid.WINDOKU, accu))
+            return true;
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Windoku.class, Grid.Block.class, accu); }
-        getHints(grid, Grid.Windoku.class, Grid.Column.class, accu);
-        getHints(grid, Grid.Windoku.class, Grid.Row.class, accu);
+        if (getHints(grid, Grid.WINDOKU, Grid.BLOCK, accu))
+            return true; }
+        if (getHints(grid, Grid.WINDOKU, Grid.COLUMN, accu))
+            return true;
+        if (getHints(grid, Grid.WINDOKU, Grid.ROW, accu))
+            return true;
        if ( grid.isDiagonals() ) {
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.WINDOKU, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.WINDOKU, accu))
+            return true;
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Windoku.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.WINDOKU, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.Windoku.class, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.WINDOKU, Grid.ANTIDIAGONAL, accu))
+            return true;
        }
        if ( grid.isDisjointGroups() ) {
-        getHints(grid, Grid.DisjointGroup.class, Grid.Windoku.class, accu);
-        getHints(grid, Grid.Windoku.class, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, Grid.WINDOKU, accu))
+            return true;
+        if (getHints(grid, Grid.WINDOKU, Grid.DISJOINTGROUP, accu))
+            return true;
        }
       }
 
       if ( grid.isCustom() ) {
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, Grid.Custom.class, accu); }
-        getHints(grid, Grid.Column.class, Grid.Custom.class, accu);
-        getHints(grid, Grid.Row.class, Grid.Custom.class, accu);
+        if (getHints(grid, Grid.BLOCK, Grid.CUSTOM, accu))
+            return true; }
+        if (getHints(grid, Grid.COLUMN, Grid.CUSTOM, accu))
+            return true;
+        if (getHints(grid, Grid.ROW, Grid.CUSTOM, accu))
+            return true;
        if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Custom.class, Grid.Block.class, accu); }
-        getHints(grid, Grid.Custom.class, Grid.Column.class, accu);
-        getHints(grid, Grid.Custom.class, Grid.Row.class, accu);
+        if (getHints(grid, Grid.CUSTOM, Grid.BLOCK, accu))
+            return true; }
+        if (getHints(grid, Grid.CUSTOM, Grid.COLUMN, accu))
+            return true;
+        if (getHints(grid, Grid.CUSTOM, Grid.ROW, accu))
+            return true;
        if ( grid.isDiagonals() ) {
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Diagonal.class, Grid.Custom.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, Grid.CUSTOM, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.AntiDiagonal.class, Grid.Custom.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, Grid.CUSTOM, accu))
+            return true;
         if ( grid.isXDiagonal() )
-        getHints(grid, Grid.Custom.class, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.CUSTOM, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHints(grid, Grid.Custom.class, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.CUSTOM, Grid.ANTIDIAGONAL, accu))
+            return true;
        }
        if ( grid.isWindoku() ) {
-        getHints(grid, Grid.Windoku.class, Grid.Custom.class, accu);
-        getHints(grid, Grid.Custom.class, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.WINDOKU, Grid.CUSTOM, accu))
+            return true;
+        if (getHints(grid, Grid.CUSTOM, Grid.WINDOKU, accu))
+            return true;
        }
       }
 
@@ -134,25 +199,34 @@ public class Locking implements IndirectHintProducer {
 
       if ( !isDirectMode ) {
        if ( !grid.isLatinSquare() ) {
-        getHintsG(grid, Grid.Block.class, accu); }
-        getHintsG(grid, Grid.Column.class, accu);
-        getHintsG(grid, Grid.Row.class, accu);
+        if (getHintsG(grid, Grid.BLOCK, accu))
+            return true; }
+        if (getHintsG(grid, Grid.COLUMN, accu))
+            return true;
+        if (getHintsG(grid, Grid.ROW, accu))
+            return true;
        if ( grid.isDiagonals() ) {
         if ( grid.isXDiagonal() )
-        getHintsG(grid, Grid.Diagonal.class, accu);
+        if (getHintsG(grid, Grid.DIAGONAL, accu))
+            return true;
         if ( grid.isXAntiDiagonal() )
-        getHintsG(grid, Grid.AntiDiagonal.class, accu);
+        if (getHintsG(grid, Grid.ANTIDIAGONAL, accu))
+            return true;
        }
        if ( grid.isDisjointGroups() ) {
-        getHintsG(grid, Grid.DisjointGroup.class, accu);
+        if (getHintsG(grid, Grid.DISJOINTGROUP, accu))
+            return true;
        }
        if ( grid.isWindoku() ) {
-        getHintsG(grid, Grid.Windoku.class, accu);
+        if (getHintsG(grid, Grid.WINDOKU, accu))
+            return true;
        }
        if ( grid.isCustom() ) {
-        getHintsG(grid, Grid.Custom.class, accu);
+        if (getHintsG(grid, Grid.CUSTOM, accu))
+            return true;
        }
       }
+        return false;
     }
 
     /**
@@ -165,10 +239,10 @@ public class Locking implements IndirectHintProducer {
      * @param regionType1 the first part type
      * @param regionType2 the second part type
      */
-    private <S extends Grid.Region, T extends Grid.Region> void getHints(
-            Grid grid, Class<S> regionType1, Class<T> regionType2,
+    private boolean getHints(
+            Grid grid, int regionType1, int regionType2,
             HintsAccumulator accu) throws InterruptedException {
-//a     assert (regionType1 == Grid.Block.class) != (regionType2 == Grid.Block.class);
+//a     assert (regionType1 == Grid.BLOCK) != (regionType2 == Grid.BLOCK);
         int i1max = grid.getRegionMax(regionType1);
         int i2max = grid.getRegionMax(regionType2);
         // Iterate on pairs of parts
@@ -181,14 +255,16 @@ public class Locking implements IndirectHintProducer {
                     Set<Cell> region2Cells = region2.getCellSet();
                     // Iterate on values
                     for (int value = 1; value <= 9; value++) {
+                        if ((values & (1 << value)) == 0)
+                            continue;
                         boolean isInCommonSet = true;
                         // Get the potential positions of the value in part1
-                        BitSet potentialPositions = region1.getPotentialPositions(value);
+                        int potentialPositions = region1.getPotentialPositionsMask(value);
                         // Note: if cardinality == 1, this is Hidden Single in part1
-                        if (potentialPositions.cardinality() > 1) {
+                        if (Integer.bitCount(potentialPositions) > 1) {
                             // Test if all potential positions are also in part2
                             for (int i = 0; i < 9; i++) {
-                                if (potentialPositions.get(i)) {
+                                if ((potentialPositions & (1 << i)) != 0) {
                                     Cell cell = region1.getCell(i);
                                     if (!region2Cells.contains(cell))
                                         isInCommonSet = false;
@@ -196,13 +272,17 @@ public class Locking implements IndirectHintProducer {
                             }
                             if (isInCommonSet) {
                                 if (isDirectMode) {
-                                    lookForFollowingHiddenSingles(grid, regionType1, accu, i1,
-                                            region1, region2, value);
+                                    if (lookForFollowingHiddenSingles(grid, regionType1, accu, i1,
+                                            region1, region2, value))
+                                        return true;
                                 } else {
                                     // Potential solution found
                                     IndirectHint hint = createLockingHint(region1, region2, null, value);
-                                    if (hint.isWorth())
-                                        accu.add(hint);
+                                    if (hint.isWorth()) {
+                                        valuesWithHints |= 1 << value;
+                                        if (accu.add(hint))
+                                            return true;
+                                    }
                                 }
                             }
                         }
@@ -211,6 +291,7 @@ public class Locking implements IndirectHintProducer {
               }
             }
         }
+        return false;
     }
 
     /** Generalized Intersection
@@ -220,8 +301,8 @@ public class Locking implements IndirectHintProducer {
      * Note: at least one variant must be enabled.
      * @param regionType1 the first part type
      */
-    private <S extends Grid.Region> void getHintsG(
-            Grid grid, Class<S> regionType1,
+    private boolean getHintsG(
+            Grid grid, int regionType1,
             HintsAccumulator accu) throws InterruptedException {
         int i1max = grid.getRegionMax(regionType1);
         // Iterate on pairs of parts
@@ -230,15 +311,17 @@ public class Locking implements IndirectHintProducer {
             if ( region1 != null ) {
                 Set<Cell> region1Cells = region1.getCellSet();
                 for (int value = 1; value <= 9; value++) {
+                    if ((values & (1 << value)) == 0)
+                        continue;
                     // Get the potential positions of the value in part1
-                    BitSet potentialPositions = region1.getPotentialPositions(value);
-                    int potentialCardinality = potentialPositions.cardinality();
+                    int potentialPositions = region1.getPotentialPositionsMask(value);
+                    int potentialCardinality = Integer.bitCount(potentialPositions);
                     if (potentialCardinality > 1 && potentialCardinality < 8) {
 
                         Cell[] regionCells = new Cell[potentialCardinality]; // highlighted potentials
                         List<Cell> result = new ArrayList<Cell>();           // generalized intersection cells
                         for (int i = 0, pos = 0; i < 9; i++) {
-                            if (potentialPositions.get(i)) {
+                            if ((potentialPositions & (1 << i)) != 0) {
                                 Cell cell = region1.getCell(i);
                                 regionCells[pos++] = cell;
                                 if ( result.isEmpty() ) {
@@ -277,7 +360,9 @@ public class Locking implements IndirectHintProducer {
                             IndirectHint hint = new LockingGHint(this, regionCells, value,
                                 cellPotentials, cellRemovablePotentials, region1, null);
                             if (hint.isWorth()) {
-                                accu.add(hint);
+                                valuesWithHints |= 1 << value;
+                                if (accu.add(hint))
+                                    return true;
                             }
                           }
                         } // !Empty
@@ -285,10 +370,11 @@ public class Locking implements IndirectHintProducer {
                 } // for each value
             } // region1
         }
+        return false;
     }
 
-    private <S extends Grid.Region> void lookForFollowingHiddenSingles(Grid grid,
-            Class<S> regionType1, HintsAccumulator accu, int i1,
+    private boolean lookForFollowingHiddenSingles(Grid grid,
+            int regionType1, HintsAccumulator accu, int i1,
             Grid.Region region1, Grid.Region region2, int value) throws InterruptedException {
         int i3max = grid.getRegionMax(regionType1);
         // Look if the pointing / claiming induce a hidden single
@@ -299,12 +385,12 @@ public class Locking implements IndirectHintProducer {
                 if (region3.crosses(region2)) {
                     // Region <> region1 but crosses region2
                     Set<Cell> region2Cells = region2.getCellSet();
-                    BitSet potentialPositions3 = region3.getPotentialPositions(value);
-                    if (potentialPositions3.cardinality() > 1) {
+                    int potentialPositions3 = region3.getPotentialPositionsMask(value);
+                    if (Integer.bitCount(potentialPositions3) > 1) {
                         int nbRemainInRegion3 = 0;
                         Cell hcell = null;
                         for (int i = 0; i < 9; i++) {
-                            if (potentialPositions3.get(i)) {
+                            if ((potentialPositions3 & (1 << i)) != 0) {
                                 Cell cell = region3.getCell(i);
                                 if (!region2Cells.contains(cell)) { // This position is not removed
                                     nbRemainInRegion3++;
@@ -314,14 +400,18 @@ public class Locking implements IndirectHintProducer {
                         }
                         if (nbRemainInRegion3 == 1) {
                             IndirectHint hint = createLockingHint(region1, region2, hcell, value);
-                            if (hint.isWorth())
-                                accu.add(hint);
+                            if (hint.isWorth()) {
+                                valuesWithHints |= 1 << value;
+                                if (accu.add(hint))
+                                    return true;
+                            }
                         }
                     }
                 }
               }
             }
         }
+        return false;
     }
 
     private IndirectHint createLockingHint(Grid.Region p1, Grid.Region p2, Cell hcell, int value) {
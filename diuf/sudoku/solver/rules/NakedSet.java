@@ -19,6 +19,7 @@ import diuf.sudoku.tools.*;
 public class NakedSet implements IndirectHintProducer {
 
     private int degree;
+    private final EmptyRegions emptyRegions = new EmptyRegions();
 
     public NakedSet(int degree) {
 //a     assert degree > 1 && degree <= 4;
@@ -26,27 +27,36 @@ public class NakedSet implements IndirectHintProducer {
     }
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
+        emptyRegions.start(grid);
       if ( !grid.isLatinSquare() ) {
-        getHints(grid, Grid.Block.class, accu);
+        if (getHints(grid, Grid.BLOCK, accu))
+            return;
       }
-        getHints(grid, Grid.Column.class, accu);
-        getHints(grid, Grid.Row.class, accu);
+        if (getHints(grid, Grid.COLUMN, accu))
+            return;
+        if (getHints(grid, Grid.ROW, accu))
+            return;
       if ( grid.isDiagonals() ) {
        if ( grid.isXDiagonal() ) {
-        getHints(grid, Grid.Diagonal.class, accu);
+        if (getHints(grid, Grid.DIAGONAL, accu))
+            return;
        }
        if ( grid.isXAntiDiagonal() ) {
-        getHints(grid, Grid.AntiDiagonal.class, accu);
+        if (getHints(grid, Grid.ANTIDIAGONAL, accu))
+            return;
        }
       }
       if ( grid.isDisjointGroups() ) {
-        getHints(grid, Grid.DisjointGroup.class, accu);
+        if (getHints(grid, Grid.DISJOINTGROUP, accu))
+            return;
       }
       if ( grid.isWindoku() ) {
-        getHints(grid, Grid.Windoku.class, accu);
+        if (getHints(grid, Grid.WINDOKU, accu))
+            return;
       }
       if ( grid.isCustom() ) {
-        getHints(grid, Grid.Custom.class, accu);
+        if (getHints(grid, Grid.CUSTOM, accu))
+            return;
       }
     }
 
@@ -54,11 +64,14 @@ public class NakedSet implements IndirectHintProducer {
      * For each regions of the given type, check if a n-tuple of values have
      * a common n-tuple of potential positions, and no other potential position.
      */
-    private <T extends Grid.Region> void getHints(Grid grid, Class<T> regionType,
+    private boolean getHints(Grid grid, int regionType,
             HintsAccumulator accu) throws InterruptedException {
         Grid.Region[] regions = grid.getRegions(regionType);
         // Iterate on parts
         for (Grid.Region region : regions) {
+            if (emptyRegions.isEmpty(region))
+                continue;
+            boolean isEmpty = true;
             if (region.getEmptyCellCount() >= degree * 2) {
                 Permutations perm = new Permutations(degree, 9);
                 // Iterate on tuples of positions
@@ -82,12 +95,18 @@ public class NakedSet implements IndirectHintProducer {
                     if (commonPotentialValues != null) {
                         // Potential hint found
                         IndirectHint hint = createValueUniquenessHint(region, cells, commonPotentialValues);
-                        if (hint.isWorth())
-                            accu.add(hint);
+                        if (hint.isWorth()) {
+                            isEmpty = false;
+                            if (accu.add(hint))
+                                return true;
+                        }
                     }
                 }
             }
+            if (isEmpty)
+                emptyRegions.setEmpty(region);
         }
+        return false;
     }
 
     private IndirectHint createValueUniquenessHint(Grid.Region region, Cell[] cells,
@@ -29,11 +29,12 @@ public class NakedSingle implements DirectHintProducer {
                 Cell cell = grid.getCell(index%9,index/9);
               if ( cell.getValue() == 0 ) {
                 // Get the cell's potential values
-                BitSet potentialValues = cell.getPotentialValues();
-                if (potentialValues.cardinality() == 1) {
+                int potentialValues = cell.getPotentialValuesMask();
+                if (Integer.bitCount(potentialValues) == 1) {
                     // One potential value -> solution found
                 //  int uniqueValue = potentialValues.nextSetBit(0);
-                    accu.add(new NakedSingleHint(this, null, cell, potentialValues.nextSetBit(0)));
+                    if (accu.add(new NakedSingleHint(this, null, cell, Integer.numberOfTrailingZeros(potentialValues))))
+                        return;
                 }
               }
             }
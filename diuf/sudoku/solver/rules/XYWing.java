@@ -70,28 +70,31 @@ public class XYWing implements IndirectHintProducer {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell xyCell = grid.getCell(x, y);
-                BitSet xyValues = xyCell.getPotentialValues();
-                if (xyValues.cardinality() == targetCardinality) {
+                if (xyCell.getPotentialValuesCount() == targetCardinality) {
                     // Potential XY cell found
-                    for (Cell xzCell : xyCell.getHouseCells()) {
-                        BitSet xzValues = xzCell.getPotentialValues();
-                        if (xzValues.cardinality() == 2) {
+                    BitSet xyValues = xyCell.getPotentialValues();
+                    int[] peers = grid.getTopology().getPeers(xyCell.getIndex());
+                    for (int xzIndex : peers) {
+                        Cell xzCell = grid.getCell(xzIndex);
+                        if (xzCell.getPotentialValuesCount() == 2) {
                             // Potential XZ cell found. Do small test
-                            BitSet remValues = (BitSet)xyValues.clone();
-                            remValues.andNot(xzValues);
-                            if (remValues.cardinality() == 1) {
+                            int remValues = xyCell.getPotentialValuesMask() & ~xzCell.getPotentialValuesMask();
+                            if (Integer.bitCount(remValues) == 1) {
                                 // We have found XZ cell, look for YZ cell
-                                for (Cell yzCell : xyCell.getHouseCells()) {
-                                    BitSet yzValues = yzCell.getPotentialValues();
-                                    if (yzValues.cardinality() == 2) {
+                                BitSet xzValues = xzCell.getPotentialValues();
+                                for (int yzIndex : peers) {
+                                    Cell yzCell = grid.getCell(yzIndex);
+                                    if (yzCell.getPotentialValuesCount() == 2) {
                                         // Potential YZ cell found
+                                        BitSet yzValues = yzCell.getPotentialValues();
                                         if (isXYZ) {
                                             if (isXYZWing(xyValues, xzValues, yzValues)) {
                                                 // Found XYZ-Wing pattern
                                                 XYWingHint hint = createHint(xyCell, xzCell, yzCell,
                                                         xzValues, yzValues);
                                                 if (hint.isWorth())
-                                                    accu.add(hint);
+                                                    if (accu.add(hint))
+                                                        return;
                                             }
                                         } else {
                                             if (isXYWing(xyValues, xzValues, yzValues)) {
@@ -99,7 +102,8 @@ public class XYWing implements IndirectHintProducer {
                                                 XYWingHint hint = createHint(xyCell, xzCell, yzCell,
                                                         xzValues, yzValues);
                                                 if (hint.isWorth())
-                                                    accu.add(hint);
+                                                    if (accu.add(hint))
+                                                        return;
                                             }
                                         }
                                     } // yzValues.cardinality() == 2
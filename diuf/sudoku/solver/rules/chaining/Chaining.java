@@ -26,7 +26,6 @@ public class Chaining implements IndirectHintProducer {
     private final boolean isNisho;
     private final int level;
     private final boolean parallel;
-    private Grid saveGrid = new Grid();
     private List<IndirectHintProducer> otherRules;
     private Grid lastGrid = null;
     private Collection<ChainingHint> lastHints = null;
@@ -127,9 +126,9 @@ public class Chaining implements IndirectHintProducer {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell cell = grid.getCell(x, y);
-//c             int cardinality = cell.getPotentialValues().cardinality();
+//c             int cardinality = cell.getPotentialValuesCount();
                 if (cell.getValue() == 0) { // the cell is empty
-                int cardinality = cell.getPotentialValues().cardinality();
+                int cardinality = cell.getPotentialValuesCount();
                     if (cardinality > 1) {
                         // Iterate on all potential values that are not alone
                         for (int value = 1; value <= 9; value++) {
@@ -219,9 +218,9 @@ public class Chaining implements IndirectHintProducer {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell cell = grid.getCell(x, y);
-//c             int cardinality = cell.getPotentialValues().cardinality();
+//c             int cardinality = cell.getPotentialValuesCount();
                 if (cell.getValue() == 0) { // the cell is empty
-                int cardinality = cell.getPotentialValues().cardinality();
+                int cardinality = cell.getPotentialValuesCount();
                     if (cardinality > 2 || (cardinality > 1 && isDynamic)) {
                         if (!parallel) {
                             result.addAll(getMultipleChainsHintList(grid, cell, cardinality));
@@ -248,7 +247,22 @@ public class Chaining implements IndirectHintProducer {
         }
         try {
             lastThread.join();
+            // Each thread joins the previous one, so all of them are done.
+            // The grids of the threads that found hints are kept by the hints.
+            GridPool pool = GridPool.getInstance();
+            for (MultipleChainsHintsCollector thread : threads) {
+                if (!thread.hasHints)
+                    pool.release(thread.grid);
+            }
         } catch (InterruptedException e) {}
+        for (MultipleChainsHintsCollector thread : threads) {
+            if (thread.failure instanceof RuntimeException)
+                throw (RuntimeException)thread.failure;
+            if (thread.failure instanceof Error)
+                throw (Error)thread.failure;
+            if (thread.failure != null)
+                throw new RuntimeException(thread.failure);
+        }
         result.addAll(parallelResult);
         return result;
     }
@@ -256,20 +270,32 @@ public class Chaining implements IndirectHintProducer {
     class MultipleChainsHintsCollector extends Thread {
         private Chaining chaining;
         private ConcurrentLinkedQueue<ChainingHint> accumulator;
-        private final Grid grid = new Grid();
+        private final Grid grid;
         private final Cell cell;
         private final Thread previousThread;
+        private volatile boolean hasHints = false;
+        private volatile Throwable failure = null;
+        // The budget of the thread that started this one
+        private final Budget budget = Budget.getCurrent();
         MultipleChainsHintsCollector(Chaining caller, Grid grid, Cell cell, ConcurrentLinkedQueue<ChainingHint> result, Thread lastThread) {
             this.chaining = new Chaining(caller.isMultipleEnabled, caller.isDynamic, caller.isNisho, caller.level, false);
             accumulator = result;
-            grid.copyTo(this.grid);
+            this.grid = GridPool.getInstance().acquire(grid);
             this.cell = this.grid.getCell(cell.getX(), cell.getY());
             previousThread = lastThread;
         }
         @Override
         public void run() {
-            int cardinality = this.cell.getPotentialValues().cardinality();
-            List<ChainingHint> result = chaining.getMultipleChainsHintList(this.grid, this.cell, cardinality);
+            int cardinality = this.cell.getPotentialValuesCount();
+            List<ChainingHint> result = Collections.emptyList();
+            Budget.setCurrent(budget);
+            try {
+                result = chaining.getMultipleChainsHintList(this.grid, this.cell, cardinality);
+            } catch (Throwable ex) {
+                // Errors too. Still join the previous thread: the caller only joins the last one
+                failure = ex;
+            }
+            hasHints = !result.isEmpty();
             if ( previousThread != null ) {
                 try {
                     previousThread.join();
@@ -311,7 +337,7 @@ public class Chaining implements IndirectHintProducer {
     private void doUnaryChaining(Grid grid, final Potential pOn, List<ChainingHint> result,
             boolean isYChainEnabled, boolean isXChainEnabled) {
 
-        if (pOn.cell.getPotentialValues().cardinality() > 2
+        if (pOn.cell.getPotentialValuesCount() > 2
                 && !isXChainEnabled)
             return; // Y-Cycles can only start if cell has 2 potential values
 
@@ -459,15 +485,15 @@ public class Chaining implements IndirectHintProducer {
 
     private void doRegionChainings(Grid grid, List<ChainingHint> result, Cell cell,
             int value, LinkedSet<Potential> onToOn, LinkedSet<Potential> onToOff) {
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region region = grid.getRegionAt(regionType, cell.getX(), cell.getY());
           if ( region != null ) {
-            BitSet potentialPositions = region.getPotentialPositions(value);
+            int potentialPositions = region.getPotentialPositionsMask(value);
 
             // Is this region worth ?
-            int cardinality = potentialPositions.cardinality();
+            int cardinality = Integer.bitCount(potentialPositions);
             if (cardinality == 2 || (isMultipleEnabled && cardinality > 2)) {
-                int firstPos = potentialPositions.nextSetBit(0);
+                int firstPos = Integer.numberOfTrailingZeros(potentialPositions);
                 Cell firstCell = region.getCell(firstPos);
 
                 // Do we meet region for the first time ?
@@ -480,7 +506,8 @@ public class Chaining implements IndirectHintProducer {
                     LinkedSet<Potential> regionToOff = new LinkedSet<Potential>();
 
                     // Iterate on potential positions within the region
-                    for (int pos = firstPos; pos >= 0; pos = potentialPositions.nextSetBit(pos + 1)) {
+                    for (int positions = potentialPositions; positions != 0; positions &= positions - 1) {
+                        int pos = Integer.numberOfTrailingZeros(positions);
                         Cell otherCell = region.getCell(pos);
                         if (otherCell.equals(cell)) {
                             posToOn.put(pos, onToOn);
@@ -541,7 +568,7 @@ public class Chaining implements IndirectHintProducer {
         }
 
         // Second rule: other potential position for this value get off
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region region = grid.getRegionAt(regionType, p.cell.getX(), p.cell.getY());
           if ( region != null ) {
             for (int i = 0; i < 9; i++) {
@@ -576,13 +603,14 @@ public class Chaining implements IndirectHintProducer {
 
     private void addHiddenParentsOfRegion(Potential p, Grid grid, Grid source,
             Grid.Region curRegion, LinkedSet<Potential> offPotentials) {
-        Grid.Region srcRegion = source.getRegionAt(curRegion.getClass(),
+        Grid.Region srcRegion = source.getRegionAt(curRegion.getRegionTypeId(),
                 p.cell.getX(), p.cell.getY());
-        BitSet curPositions = curRegion.copyPotentialPositions(p.value);
-        BitSet srcPositions = srcRegion.copyPotentialPositions(p.value);
+        int curPositions = curRegion.getPotentialPositionsMask(p.value);
+        int srcPositions = srcRegion.getPotentialPositionsMask(p.value);
         // Get positions of the potential value that have been removed
-        srcPositions.andNot(curPositions);
-        for (int i = srcPositions.nextSetBit(0); i >= 0; i = srcPositions.nextSetBit(i + 1)) {
+        int removedPositions = srcPositions & ~curPositions;
+        for (; removedPositions != 0; removedPositions &= removedPositions - 1) {
+            int i = Integer.numberOfTrailingZeros(removedPositions);
             // Add a hidden parent
             Cell curCell = curRegion.getCell(i);
             Potential parent = new Potential(curCell, p.value, false);
@@ -593,19 +621,20 @@ public class Chaining implements IndirectHintProducer {
         }
     }
 
+    // Causes of the region types, indexed by region type identifier
+    private static final Potential.Cause[] regionCauses = {
+        Potential.Cause.HiddenBlock,
+        Potential.Cause.HiddenRow,
+        Potential.Cause.HiddenColumn,
+        Potential.Cause.Diagonal,
+        Potential.Cause.AntiDiagonal,
+        Potential.Cause.DisjointGroup,
+        Potential.Cause.Windoku,
+        Potential.Cause.Custom
+    };
+
     static Potential.Cause getRegionCause(Region region) {
-        if (region instanceof Block)
-            return Potential.Cause.HiddenBlock;
-        else if (region instanceof Column)
-            return Potential.Cause.HiddenColumn;
-        else if (region instanceof Row)
-            return Potential.Cause.HiddenRow;
-        else if (region instanceof Diagonal) return Potential.Cause.Diagonal;
-        else if (region instanceof AntiDiagonal) return Potential.Cause.AntiDiagonal;
-        else if (region instanceof DisjointGroup) return Potential.Cause.DisjointGroup;
-        else if (region instanceof Windoku) return Potential.Cause.Windoku;
-        else if (region instanceof Custom) return Potential.Cause.Custom;
-        return null;
+        return regionCauses[region.getRegionTypeId()];
     }
 
     /**
@@ -642,15 +671,15 @@ public class Chaining implements IndirectHintProducer {
         //  partTypes.add(Grid.Row.class);
         //  partTypes.add(Grid.Column.class);
         //  for (Class<? extends Grid.Region> partType : partTypes) {
-            for (Class<? extends Grid.Region> partType : grid.getRegionTypes()) {
+            for (int partType : grid.getRegionTypeIds()) {
                 Grid.Region region = grid.getRegionAt(partType, p.cell.getX(), p.cell.getY());
               if ( region != null ) {
-                BitSet potentialPositions = region.getPotentialPositions(p.value);
-                if (potentialPositions.cardinality() == 2) {
-                    int otherPosition = potentialPositions.nextSetBit(0);
+                int potentialPositions = region.getPotentialPositionsMask(p.value);
+                if (Integer.bitCount(potentialPositions) == 2) {
+                    int otherPosition = Integer.numberOfTrailingZeros(potentialPositions);
                     Cell otherCell = region.getCell(otherPosition);
                     if (otherCell.equals(p.cell)) {
-                        otherPosition = potentialPositions.nextSetBit(otherPosition + 1);
+                        otherPosition = 31 - Integer.numberOfLeadingZeros(potentialPositions);
                         otherCell = region.getCell(otherPosition);
                     }
                     Potential pOn = new Potential(otherCell, p.value, true, p,
@@ -706,7 +735,7 @@ public class Chaining implements IndirectHintProducer {
             length++;
             while (!pendingOff.isEmpty()) {
                 Potential p = pendingOff.remove(0);
-                Set<Potential> makeOn = getOffToOn(grid, p, saveGrid, toOff,
+                Set<Potential> makeOn = getOffToOn(grid, p, grid, toOff,
                         isYChainEnabled, isXChainEnabled);
                 for (Potential pOn : makeOn) {
                     if (length >= 4 && pOn.equals(source)) {
@@ -752,7 +781,7 @@ public class Chaining implements IndirectHintProducer {
             }
             while (!pendingOff.isEmpty()) {
                 Potential p = pendingOff.remove(0);
-                Set<Potential> makeOn = getOffToOn(grid, p, saveGrid, toOff,
+                Set<Potential> makeOn = getOffToOn(grid, p, grid, toOff,
                         isYChainEnabled, true);
                 for (Potential pOn : makeOn) {
                     Potential pOff = new Potential(pOn.cell, pOn.value, false); // Conjugate
@@ -785,11 +814,20 @@ public class Chaining implements IndirectHintProducer {
      */
     private Potential[] doChaining(Grid grid, LinkedSet<Potential> toOn,
             LinkedSet<Potential> toOff) {
-        grid.copyTo(saveGrid);
+        /*
+         * Only dynamic chains modify the grid. The initial state is then needed
+         * to find the hidden parents, and the changes are undone on return.
+         */
+        GridPool pool = GridPool.getInstance();
+        Budget budget = Budget.getCurrent();
+        Grid source = (isDynamic ? pool.acquire(grid) : grid);
+        int mark = grid.mark();
         try {
             List<Potential> pendingOn = new LinkedList<Potential>(toOn);
             List<Potential> pendingOff = new LinkedList<Potential>(toOff);
             while (!pendingOn.isEmpty() || !pendingOff.isEmpty()) {
+                if (budget != null)
+                    budget.step();
                 if (!pendingOn.isEmpty()) {
                     Potential p = pendingOn.remove(0);
                     Set<Potential> makeOff = getOnToOff(grid, p, !isNisho);
@@ -807,7 +845,7 @@ public class Chaining implements IndirectHintProducer {
                     }
                 } else {
                     Potential p = pendingOff.remove(0);
-                    Set<Potential> makeOn = getOffToOn(grid, p, saveGrid, toOff,
+                    Set<Potential> makeOn = getOffToOn(grid, p, source, toOff,
                             !isNisho, true);
                     if (isDynamic)
                         p.off(); // memorize the shutted down potentials
@@ -825,7 +863,7 @@ public class Chaining implements IndirectHintProducer {
                     }
                 }
                 if (pendingOn.isEmpty() && pendingOff.isEmpty() && level > 0) {
-                    for (Potential pOff : getAdvancedPotentials(grid, saveGrid, toOff)) {
+                    for (Potential pOff : getAdvancedPotentials(grid, source, toOff)) {
                         if (!toOff.contains(pOff)) {
                             // Not processed yet
                             toOff.add(pOff);
@@ -836,7 +874,10 @@ public class Chaining implements IndirectHintProducer {
             }
             return null;
         } finally {
-            saveGrid.copyTo(grid);
+            grid.rollback(mark);
+            grid.release(mark);
+            if (source != grid)
+                pool.release(source);
         }
     }
 
@@ -870,7 +911,7 @@ public class Chaining implements IndirectHintProducer {
             IndirectHintProducer rule = otherRules.get(index);
             try {
                 rule.getHints(grid, new HintsAccumulator() {
-                    public void add(Hint hint0) {
+                    public boolean add(Hint hint0) {
                         IndirectHint hint = (IndirectHint)hint0;
                         Collection<Potential> parents =
                             ((HasParentPotentialHint)hint).getRuleParents(source, grid);
@@ -912,6 +953,7 @@ public class Chaining implements IndirectHintProducer {
                                 }
                             }
                         }
+                        return false;
                     }
                 });
             } catch(InterruptedException ex) {
@@ -942,7 +984,8 @@ public class Chaining implements IndirectHintProducer {
         while (!p.parents.isEmpty()) {
 //a         assert p.parents.size() == 1;
             Cell srcCell = grid.getCell(p.cell.getX(), p.cell.getY());
-            for (Cell cell : srcCell.getHouseCells()) {
+            for (int peer : grid.getTopology().getPeers(srcCell.getIndex())) {
+                Cell cell = grid.getCell(peer);
                 if (!cells.contains(cell) && cell.hasPotentialValue(p.value)) {
                     if (p.isOn)
                         cancelForw.add(new Potential(cell, p.value, false));
@@ -1108,21 +1151,27 @@ public class Chaining implements IndirectHintProducer {
 
     private void getPreviousHints(HintsAccumulator accu) throws InterruptedException {
         for (ChainingHint hint : lastHints)
-            accu.add(hint);
+            if (accu.add(hint))
+                return;
     }
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
+        Budget budget = Budget.getCurrent();
+        if (budget != null)
+            budget.checkLevel(level);
         if (lastGrid != null && grid.equals(lastGrid)) {
             getPreviousHints(accu);
             return;
         }
         List<ChainingHint> result = getHintList(grid);
-        lastGrid = new Grid();
+        if (lastGrid == null || !lastGrid.getVariant().equals(grid.getVariant()))
+            lastGrid = new Grid(grid.getVariant());
         grid.copyTo(lastGrid);
         // This filters hints that are equal:
         lastHints = new LinkedHashSet<ChainingHint>(result);
         for (IndirectHint hint : lastHints)
-            accu.add(hint);
+            if (accu.add(hint))
+                return;
     }
 
 }
@@ -140,8 +140,8 @@ public abstract class ChainingHint extends IndirectHint implements Rule, HasPare
         viewNum-= getFlatViewCount();
         if (viewNum >= 0) {
             // Create the grid deduced from the container (or "main") chain
-            Grid nestedGrid = new Grid();
-            grid.copyTo(nestedGrid);
+            GridPool pool = GridPool.getInstance();
+            Grid nestedGrid = pool.acquire(grid);
             Pair<ChainingHint, Integer> nest = getNestedChain(viewNum);
             ChainingHint nestedChain = nest.getValue1();
             int nestedViewNum = nest.getValue2();
@@ -164,6 +164,7 @@ public abstract class ChainingHint extends IndirectHint implements Rule, HasPare
                 else
                     result.put(cell, SingletonBitSet.create(p.value));
             }
+            pool.release(nestedGrid);
         }
         return result;
     }
@@ -203,21 +204,21 @@ public abstract class ChainingHint extends IndirectHint implements Rule, HasPare
         return result;
     }
 
-    private static Class<? extends Region> getCauseRegion(Potential.Cause cause) {
+    private static int getCauseRegion(Potential.Cause cause) {
         switch(cause) {
         case HiddenBlock:
-            return Block.class;
+            return Grid.BLOCK;
         case HiddenColumn:
-            return Column.class;
+            return Grid.COLUMN;
         case HiddenRow:
-            return Row.class;
-        case Diagonal:      return Diagonal.class;
-        case AntiDiagonal:  return AntiDiagonal.class;
-        case DisjointGroup: return DisjointGroup.class;
-        case Windoku:       return Windoku.class;
-        case Custom:        return Custom.class;
+            return Grid.ROW;
+        case Diagonal:      return Grid.DIAGONAL;
+        case AntiDiagonal:  return Grid.ANTIDIAGONAL;
+        case DisjointGroup: return Grid.DISJOINTGROUP;
+        case Windoku:       return Grid.WINDOKU;
+        case Custom:        return Grid.CUSTOM;
         default:
-            return null;
+            return -1;
         }
     }
 
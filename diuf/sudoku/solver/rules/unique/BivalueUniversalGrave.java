@@ -18,15 +18,22 @@ import diuf.sudoku.tools.*;
  */
 public class BivalueUniversalGrave implements IndirectHintProducer {
 
-    private final Grid temp = new Grid();
-
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
-        grid.copyTo(temp);
+        GridPool pool = GridPool.getInstance();
+        Grid temp = pool.acquire(grid);
+        try {
+            getHints(grid, temp, accu);
+        } finally {
+            pool.release(temp);
+        }
+    }
+
+    private boolean getHints(Grid grid, Grid temp, HintsAccumulator accu) throws InterruptedException {
         List<Cell> bugCells = new ArrayList<Cell>();
         Map<Cell, BitSet> bugValues = new HashMap<Cell, BitSet>();
         BitSet allBugValues = new BitSet(9);
         Set<Cell> commonCells = null;
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region[] regions = grid.getRegions(regionType);
             for (int i = 0; i < regions.length; i++) {
                 Grid.Region region = regions[i];
@@ -42,7 +49,7 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                         for (int index = positions.nextSetBit(0); index >= 0;
                                 index = positions.nextSetBit(index + 1)) {
                             Cell cell = region.getCell(index);
-                            int cellCardinality = cell.getPotentialValues().cardinality();
+                            int cellCardinality = cell.getPotentialValuesCount();
                             if (cellCardinality >= 3)
                                 newBugCells.add(cell);
                         }
@@ -64,17 +71,21 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                             twin.removePotentialValue(value);
                             if (commonCells == null)
                                 commonCells = new LinkedHashSet<Cell>(cell.getHouseCells());
-                            else
-                                commonCells.retainAll(cell.getHouseCells());
+                            else {
+                                for (Iterator<Cell> iter = commonCells.iterator(); iter.hasNext();) {
+                                    if (!cell.isPeerOf(iter.next()))
+                                        iter.remove();
+                                }
+                            }
                             commonCells.removeAll(bugCells);
                             if (bugCells.size() > 1 && allBugValues.cardinality() > 1
                                     && commonCells.isEmpty())
-                                return; // None of type 1, 2 or 3
+                                return false; // None of type 1, 2 or 3
                         }
                         if (newBugCells.isEmpty())
                             // A value appear more than twice, but no cell has more
                             // than two values. => This is not a BUG pattern.
-                            return;
+                            return false;
                     }
                 } // for value
               }
@@ -86,13 +97,13 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
         for (int y = 0; y < 9; y++) {
             for (int x = 0; x < 9; x++) {
                 Cell cell = temp.getCell(x, y);
-                if (cell.getValue() == 0 && cell.getPotentialValues().cardinality() != 2)
-                    return; // Not a BUG
+                if (cell.getValue() == 0 && cell.getPotentialValuesCount() != 2)
+                    return false; // Not a BUG
             }
         }
         // When bug values have been removed, all remaining candidates must have
         // two positions in each region
-        for (Class<? extends Grid.Region> regionType : temp.getRegionTypes()) {
+        for (int regionType : temp.getRegionTypeIds()) {
             Grid.Region[] regions = temp.getRegions(regionType);
             for (int i = 0; i < regions.length; i++) {
                 Grid.Region region = regions[i];
@@ -102,7 +113,7 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                     BitSet positions = region.getPotentialPositions(value);
                     int cardinality = positions.cardinality();
                     if (cardinality != 0 && cardinality != 2)
-                        return; // Not a BUG
+                        return false; // Not a BUG
                 }
               }
             }
@@ -110,33 +121,39 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
 
         if (bugCells.size() == 1) {
             // Yeah, potential BUG type-1 pattern found
-            addBug1Hint(accu, bugCells, allBugValues);
+            if (addBug1Hint(accu, bugCells, allBugValues))
+                return true;
         } else if (allBugValues.cardinality() == 1) {
             // Yeah, potential BUG type-2 or type-4 pattern found
-            addBug2Hint(accu, bugCells, allBugValues, commonCells);
+            if (addBug2Hint(accu, bugCells, allBugValues, commonCells))
+                return true;
             if (bugCells.size() == 2)
                 // Potential BUG type-4 pattern found
-                addBug4Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid);
+                if (addBug4Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid))
+                    return true;
         } else if (commonCells != null && !commonCells.isEmpty()) {
             if (bugCells.size() == 2)
                 // Potential BUG type-4 pattern found
-                addBug4Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid);
+                if (addBug4Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid))
+                    return true;
             // Yeah, potential BUG type-3 pattern found
-            addBug3Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid);
+            if (addBug3Hint(accu, bugCells, bugValues, allBugValues, commonCells, grid))
+                return true;
         }
+        return false;
     }
 
-    private void addBug1Hint(HintsAccumulator accu, List<Cell> bugCells, BitSet extraValues) throws InterruptedException {
+    private boolean addBug1Hint(HintsAccumulator accu, List<Cell> bugCells, BitSet extraValues) throws InterruptedException {
         Cell bugCell = bugCells.get(0);
         Map<Cell, BitSet> removablePotentials = new HashMap<Cell, BitSet>();
         BitSet removable = (BitSet)bugCell.getPotentialValues().clone();
         removable.andNot(extraValues);
         removablePotentials.put(bugCell, removable);
         IndirectHint hint = new Bug1Hint(this, removablePotentials, bugCell, extraValues);
-        accu.add(hint);
+        return accu.add(hint);
     }
 
-    private void addBug2Hint(HintsAccumulator accu, List<Cell> bugCells, BitSet extraValues,
+    private boolean addBug2Hint(HintsAccumulator accu, List<Cell> bugCells, BitSet extraValues,
             Set<Cell> commonCells) throws InterruptedException {
         int value = extraValues.nextSetBit(0);
         // Cells found ?
@@ -151,15 +168,17 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                 Cell[] arrCells = new Cell[bugCells.size()];
                 bugCells.toArray(arrCells);
                 IndirectHint hint = new Bug2Hint(this, removablePotentials, arrCells, value);
-                accu.add(hint);
+                if (accu.add(hint))
+                    return true;
             }
         }
+        return false;
     }
 
-    private void addBug3Hint(HintsAccumulator accu, List<Cell> bugCells,
+    private boolean addBug3Hint(HintsAccumulator accu, List<Cell> bugCells,
             Map<Cell, BitSet> extraValues, BitSet allExtraValues, Set<Cell> commonCells,
             Grid grid) throws InterruptedException {
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes3()) {
+        for (int regionType : grid.getRegionTypeIds3()) {
             // Look for a region of this type shared by bugCells
             Grid.Region region = null;
             for (Cell cell : bugCells) {
@@ -230,7 +249,8 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                                             bugCells.toArray(arrCells);
                                             IndirectHint hint = new Bug3Hint(this, removablePotentials, arrCells,
                                                     nakedCells, extraValues, allExtraValues, nakedSet, region);
-                                            accu.add(hint);
+                                            if (accu.add(hint))
+                                                return true;
                                         }
                                     } // if (!erasable.isEmpty())
                                 } // if (nakedSet != null)
@@ -240,9 +260,10 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                 } // for (degree)
             } // if (region != null)
         } // for (regionType)
+        return false;
     }
 
-    private void addBug4Hint(HintsAccumulator accu, List<Cell> bugCells,
+    private boolean addBug4Hint(HintsAccumulator accu, List<Cell> bugCells,
             Map<Cell, BitSet> extraValues, BitSet allExtraValues, Set<Cell> commonCells,
             Grid grid) throws InterruptedException {
         // Test for a common, non-bug value in both cells
@@ -253,9 +274,9 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
         common.and(c2.getPotentialValues());
         common.andNot(allExtraValues);
         if (common.cardinality() != 1)
-            return; // No BUG type 4
+            return false; // No BUG type 4
 
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes3()) {
+        for (int regionType : grid.getRegionTypeIds3()) {
             // Look for a region of this type shared by all bugCells
             Grid.Region region = null;
             for (Cell cell : bugCells) {
@@ -285,9 +306,11 @@ public class BivalueUniversalGrave implements IndirectHintProducer {
                 removablePotentials.put(c2, b2);
                 IndirectHint hint = new Bug4Hint(this, removablePotentials, c1, c2, extraValues,
                         allExtraValues, value, region);
-                accu.add(hint);
+                if (accu.add(hint))
+                    return true;
             }
         }
+        return false;
     }
 
     @Override
@@ -18,7 +18,7 @@ import diuf.sudoku.tools.*;
  */
 public class UniqueLoops implements IndirectHintProducer {
 
-    private Grid lastGrid = new Grid();
+    private Grid lastGrid = new Grid(Variant.VANILLA); // Only used for equality
     private List<UniqueLoopHint> lastResult = null;
 
     public void getHints(Grid grid, HintsAccumulator accu) throws InterruptedException {
@@ -41,7 +41,8 @@ public class UniqueLoops implements IndirectHintProducer {
         grid.copyTo(lastGrid);
         lastResult = hints;
         for (UniqueLoopHint hint : hints)
-            accu.add(hint);
+            if (accu.add(hint))
+                return;
     }
 
     private List<UniqueLoopHint> getHints(Grid grid) {
@@ -56,14 +57,14 @@ public class UniqueLoops implements IndirectHintProducer {
 //a                 assert v1 > 0 && v2 > 0;
                     List<Cell> tempLoop = new ArrayList<Cell>();
                     Collection<List<Cell>> results = new ArrayList<List<Cell>>();
-                    checkForLoops(grid, cell, v1, v2, tempLoop, 2, new BitSet(9), null, results);
+                    checkForLoops(grid, cell, v1, v2, tempLoop, 2, new BitSet(9), -1, results);
                     for (List<Cell> loop : results) {
                         // Potential loop found. Check validity
                         if (isValidLoop(grid, loop)) {
                             // This is a unique loop. Get cells with more than 2 potentials
                             List<Cell> extraCells = new ArrayList<Cell>(2);
                             for (Cell loopCell : loop) {
-                                if (loopCell.getPotentialValues().cardinality() > 2)
+                                if (loopCell.getPotentialValuesCount() > 2)
                                     extraCells.add(loopCell);
                             }
                             if (extraCells.size() == 1) {
@@ -129,17 +130,17 @@ public class UniqueLoops implements IndirectHintProducer {
      * potential values in the loop.
      * @param exValues the extra values in the current loop
      * @param lastRegionType the region type shared by the last two cells.
-     * This region type can be skipped for the next cell. Might by <tt>null</tt>.
+     * This region type can be skipped for the next cell. Might by <tt>-1</tt>.
      * @param results the collection to fill with all loops found
      * @throws InterruptedException
      */
     private void checkForLoops(Grid grid, Cell cell, int v1, int v2,
             List<Cell> loop, int allowedEx, BitSet exValues,
-            Class<? extends Grid.Region> lastRegionType, Collection<List<Cell>> results) {
+            int lastRegionType, Collection<List<Cell>> results) {
         loop.add(cell);
         exValues = (BitSet)exValues.clone(); // Ensure we cleanup ourself
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
-            if (!regionType.equals(lastRegionType)) {
+        for (int regionType : grid.getRegionTypeIds()) {
+            if (regionType != lastRegionType) {
                 Grid.Region region = grid.getRegionAt(regionType, cell.getX(), cell.getY());
               if ( region != null ) {
                 for (int i = 0; i < 9; i++) {
@@ -197,7 +198,7 @@ public class UniqueLoops implements IndirectHintProducer {
         HashSet<Grid.Region> visitedEven = new HashSet<Grid.Region>();
         boolean isOdd = false;
         for (Cell cell : loop) {
-            for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+            for (int regionType : grid.getRegionTypeIds()) {
                 Grid.Region region = grid.getRegionAt(regionType, cell.getX(), cell.getY());
               if ( region != null ) {
                 if (isOdd) {
@@ -244,8 +245,12 @@ public class UniqueLoops implements IndirectHintProducer {
         for (Cell extraCell : extraCells) {
             if (commonCells == null)
                 commonCells = new LinkedHashSet<Cell>(extraCell.getHouseCells());
-            else
-                commonCells.retainAll(extraCell.getHouseCells());
+            else {
+                for (Iterator<Cell> iter = commonCells.iterator(); iter.hasNext();) {
+                    if (!extraCell.isPeerOf(iter.next()))
+                        iter.remove();
+                }
+            }
         }
         for (Cell cell : commonCells) {
             if (!extraCells.contains(cell)) {
@@ -279,7 +284,7 @@ public class UniqueLoops implements IndirectHintProducer {
         extra.clear(v2);
         // Look for Naked and hidden Sets. Iterate on degree
         for (int degree = extra.cardinality(); degree <= 7; degree++) {
-            for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+            for (int regionType : grid.getRegionTypeIds()) {
                 Grid.Region region = grid.getRegionAt(regionType, c1);
               if ( region != null ) {
                 if (region.equals(grid.getRegionAt(regionType, c2))) {
@@ -457,7 +462,7 @@ public class UniqueLoops implements IndirectHintProducer {
         // Look for v1 or v2 locked in a region of c1 and c2
         Grid.Region r1 = null;
         Grid.Region r2 = null;
-        for (Class<? extends Grid.Region> regionType : grid.getRegionTypes()) {
+        for (int regionType : grid.getRegionTypeIds()) {
             Grid.Region region = grid.getRegionAt(regionType, c1.getX(), c1.getY());
           if ( region != null ) {
             if (region.equals(grid.getRegionAt(regionType, c2.getX(), c2.getY()))) {
@@ -37,6 +37,8 @@ public class Tester {
             writer = new PrintWriter(writer1);
             DecimalFormat format = new DecimalFormat("#0.0");
             String line = reader.readLine();
+            SolverContext context = new SolverContext();
+            Solver solver = context.getSolver();
             while (line != null) {
                 line = line.trim();
                 if (line.length() >= 81) {
@@ -44,20 +46,7 @@ public class Tester {
                     System.out.println("Analyzing Sudoku #" + reader.getLineNumber());
                     writer.println(line);
                     System.out.println(line);
-                    Grid grid = new Grid();
-                    for (int i = 0; i < 81; i++) {
-                        char ch = line.charAt(i);
-                        if (ch >= '1' && ch <= '9') {
-                            int value = (ch - '0');
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                        if (ch >= 'A' && ch <= 'I') {
-                            int value = (ch - 'A'+1);
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                    }
-                    Solver solver = new Solver(grid);
-                    solver.rebuildPotentialValues();
+                    context.reset(line);
                     try {
                         Map<Rule,Integer> rules = solver.solve(null);
                         Map<String,Integer> ruleNames = solver.toNamedList(rules);
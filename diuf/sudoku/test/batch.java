@@ -15,6 +15,10 @@ import diuf.sudoku.solver.*;
 
 public class batch {
     static String FORMAT = "%g ED=%r/%p/%d";
+    static void usage(String option) {
+        System.err.println("batch: " + option + ": option argument expected");
+        System.exit(2);
+    }
     /**
      * Solve input puzzles and print results according to the output format.
      * @param args 81-char puzzles
@@ -22,6 +26,9 @@ public class batch {
     public static void main(String[] args) {
         String          format = FORMAT;
         String          input = null;
+        String          cacheFile = null;
+        boolean         isCanonical = false;
+        RatingCache     cache = null;
         String          output = "-";
         String          a;
         String          s;
@@ -31,6 +38,11 @@ public class batch {
         PrintWriter     writer = null;
         int             ordinal = 0;
         char            want = 0;
+        double          maxRating = 0.0;
+        double          minRating = 0.0;
+        long            timeout = 0;
+        long            steps = 0;
+        int             maxLevel = -1;
         int             arg;
         long            t;
         char            c;
@@ -52,12 +64,30 @@ public class batch {
                             v = s.substring(i+1);
                             s = s.substring(0, i);
                         }
-                    if (s.equals("format"))
+                    if (s.equals("cache"))
+                        c = 'c';
+                    else if (s.equals("canonical"))
+                        c = 'k';
+                    else if (s.equals("diamond"))
+                        c = 'y';    // -d is the diagonal variant
+                    else if (s.equals("format"))
                         c = 'f';
                     else if (s.equals("in") || s.equals("input"))
                         c = 'i';
+                    else if (s.equals("max-level"))
+                        c = 'l';
+                    else if (s.equals("max-rating"))
+                        c = 'x';
+                    else if (s.equals("min-rating"))
+                        c = 'n';
                     else if (s.equals("out") || s.equals("output"))
                         c = 'o';
+                    else if (s.equals("pearl"))
+                        c = 'p';
+                    else if (s.equals("steps"))
+                        c = 's';
+                    else if (s.equals("timeout"))
+                        c = 't';
                     else
                         c = '?';
                 }
@@ -65,19 +95,60 @@ public class batch {
                     c = s.charAt(1);
                     if (s.length() > 2)
                         v = s.substring(2);
-                    else if ( ( c=='f' || c=='i' || c=='o') && ( (arg+1) < args.length) )
+                    else if ( ( c=='c' || c=='f' || c=='i' || c=='l' || c=='n' || c=='o' || c=='s' || c=='t' || c=='x') && ( (arg+1) < args.length) )
                         v = args[++arg];
                 }
                 switch (c) {
+                case 'c':
+                case 'f':
+                case 'i':
+                case 'l':
+                case 'n':
+                case 'o':
+                case 's':
+                case 't':
+                case 'x':
+                    if (v == null)
+                        usage(a);
+                    break;
+                }
+                switch (c) {
+                case 'c':
+                    cacheFile = v;
+                    break;
                 case 'f':
                     format = v;
                     break;
                 case 'i':
                     input = v;
                     break;
+                case 'k':
+                    isCanonical = true;
+                    break;
+                case 'l':
+                    maxLevel = Integer.parseInt(v);
+                    break;
+                case 'n':
+                    minRating = Double.parseDouble(v);
+                    break;
                 case 'o':
                     output = v;
                     break;
+                case 'p':
+                    want = 'p';
+                    break;
+                case 's':
+                    steps = Long.parseLong(v);
+                    break;
+                case 't':
+                    timeout = (long)(Double.parseDouble(v) * 1000);
+                    break;
+                case 'x':
+                    maxRating = Double.parseDouble(v);
+                    break;
+                case 'y':
+                    want = 'd';
+                    break;
 
 //              case '3':   // 3Rx3C
 //                  Settings.getInstance().setRC33(true);
@@ -138,6 +209,16 @@ public class batch {
                 BufferedWriter writer1 = new BufferedWriter(writer0);
                 writer = new PrintWriter(writer1);
             }
+            SolverContext context = new SolverContext();
+            Solver solver = context.getSolver();
+            solver.want = want;
+            solver.maxDifficulty = maxRating;
+            solver.minDifficulty = minRating;
+            if (timeout > 0 || steps > 0 || maxLevel >= 0)
+                solver.setBudget(new Budget(timeout, steps, maxLevel));
+            if (cacheFile != null)
+                cache = new RatingCache(new File(cacheFile),
+                        ("batch " + solver.getRatingMode()).trim(), isCanonical);
             for (;;) {
                 if (reader != null) {
                     puzzle = reader.readLine();
@@ -149,29 +230,30 @@ public class batch {
                 else
                     break;
                 if (puzzle.length() >= 81) {
-                    Grid grid = new Grid();
-                    for (int i = 0; i < 81; i++) {
-                        char ch = puzzle.charAt(i);
-                        if (ch >= '1' && ch <= '9') {
-                            int value = (ch - '0');
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                        if (ch >= 'A' && ch <= 'I') {
-                            int value = (ch - 'A'+1);
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                    }
-                    t = System.currentTimeMillis();
-                    Solver solver = new Solver(grid);
-                    solver.want = want;
-                    solver.rebuildPotentialValues();
                     ordinal++;
-                    try {
-                        solver.getBatchDifficulty();
-                    } catch (UnsupportedOperationException ex) {
-                        solver.difficulty = solver.pearl = solver.diamond = 0.0;
+                    RatingCache.Rating rating = (cache != null ? cache.get(puzzle) : null);
+                    if (rating != null) {
+                        rating.applyTo(solver);
+                        t = rating.elapsed;
                     }
-                    t = System.currentTimeMillis() - t;
+                    else {
+                        t = System.currentTimeMillis();
+                        context.reset(puzzle);
+                        try {
+                            solver.getBatchDifficulty();
+                        } catch (UnsupportedOperationException ex) {
+                            solver.difficulty = solver.pearl = solver.diamond = 0.0;
+                        }
+                        t = System.currentTimeMillis() - t;
+                        if (cache != null)
+                            cache.put(puzzle, solver, t);
+                    }
+                    String status = null;
+                    if (solver.exceeded != null)
+                        status = solver.exceeded.name().toLowerCase();
+                    else if (solver.stopped != null)
+                        status = solver.stopped.name().toLowerCase();
+                    boolean hasStatus = false;
                     s = "";
                     for (int i = 0; i < format.length(); i++) {
                         int             w;
@@ -206,6 +288,10 @@ public class batch {
                             case 'n':
                                 s += ordinal;
                                 break;
+                            case 's':
+                                s += (status != null ? status : "ok");
+                                hasStatus = true;
+                                break;
                             case 'e':
                                 t /= 10;
                                 u = t % 100;
@@ -243,6 +329,9 @@ public class batch {
                                 break;
                             }
                     }
+                    // A stopped rating is always marked, not to be taken for a complete one
+                    if (status != null && !hasStatus)
+                        s += " " + status;
                     writer.println(s);
                     writer.flush();
                 }
@@ -257,6 +346,8 @@ public class batch {
                     reader.close();
                 if (writer != null)
                     writer.close();
+                if (cache != null)
+                    cache.close();
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -129,6 +129,8 @@ public class hints {
         //      BufferedWriter writer1 = new BufferedWriter(writer0);
         //      writer = new PrintWriter(writer1);
         //  }
+            SolverContext context = new SolverContext();
+            Solver solver = context.getSolver();
             for (;;) {
                 if (reader != null) {
                     puzzle = reader.readLine();
@@ -140,21 +142,8 @@ public class hints {
                 else
                     break;
                 if (puzzle.length() >= 81) {
-                    Grid grid = new Grid();
-                    for (int i = 0; i < 81; i++) {
-                        char ch = puzzle.charAt(i);
-                        if (ch >= '1' && ch <= '9') {
-                            int value = (ch - '0');
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                        if (ch >= 'A' && ch <= 'I') {
-                            int value = (ch - 'A'+1);
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                    }
                     System.out.println(puzzle); System.out.flush();
-                    Solver solver = new Solver(grid);
-                    solver.rebuildPotentialValues();
+                    context.reset(puzzle);
                     try {
                         solver.getHintsHint();
                     } catch (UnsupportedOperationException ex) {
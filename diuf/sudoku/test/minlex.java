@@ -0,0 +1,182 @@
+/*
+ * Project: Sudoku Explainer
+ * Copyright (C) 2006-2009 Nicolas Juillerat
+ * Available under the terms of the Lesser General Public License (LGPL)
+ */
+package diuf.sudoku.test;
+
+import java.io.*;
+
+import diuf.sudoku.*;
+
+public class minlex {
+    static String FORMAT = "%m";
+    static void help() {
+        System.err.println("NAME");
+        System.err.println("  minlex - Sudoku Explainer command line canonical form");
+        System.err.println("");
+        System.err.println("SYNOPSIS");
+        System.err.println("  minlex [ --format=FORMAT ] [ --input=FILE ] [ --output=FILE ] [ puzzle ... ]");
+        System.err.println("");
+        System.err.println("DESCRIPTION");
+        System.err.println("  minlex is a Sudoku Explainer command line entry point that computes the");
+        System.err.println("  minimal lexicographical (minlex) form of one or more vanilla sudoku puzzles.");
+        System.err.println("  Equivalent puzzles, up to transposition, band/row and stack/column");
+        System.err.println("  permutations and digit relabelling, have the same minlex form.");
+        System.err.println("");
+        System.err.println("OPTIONS");
+        System.err.println("  -f, --format=FORMAT");
+        System.err.println("      Format the output for each input puzzle according to FORMAT.  Format");
+        System.err.println("      conversion are %CHARACTER; all other characters are output unchanged.");
+        System.err.println("      The default format is " + FORMAT + ".  The format conversions are:");
+        System.err.println("        %g  The input puzzle grid.");
+        System.err.println("        %m  The minlex form of the puzzle, with . for the empty cells.");
+        System.err.println("        %n  The input puzzle ordinal, counting from 1.");
+        System.err.println("        %%  The % character.");
+        System.err.println("  -i, --input=FILE");
+        System.err.println("      Read 81-character puzzle strings, one per line, from FILE.  The digits 1-9");
+        System.err.println("      and the letters A-I are givens, as in serate.  By default operands are");
+        System.err.println("      treated as 81-character puzzle strings.  If no operands are specified");
+        System.err.println("      then the standard input is read.");
+        System.err.println("  -o, --output=FILE");
+        System.err.println("      Write output to FILE instead of the standard output.");
+        System.exit(2);
+    }
+    /**
+     * Print the minlex form of the input puzzles according to the output format.
+     * @param args 81-char puzzles
+     */
+    public static void main(String[] args) {
+        String          format = FORMAT;
+        String          input = null;
+        String          output = "-";
+        String          s;
+        String          v;
+        String          puzzle;
+        BufferedReader  reader = null;
+        PrintWriter     writer = null;
+        int             arg;
+        long            ordinal = 0;
+        char            c;
+        try {
+            for (arg = 0; arg < args.length; arg++) {
+                s = args[arg];
+                if (s.length() < 2 || s.charAt(0) != '-')
+                    break;
+                v = null;
+                if (s.charAt(1) == '-') {
+                    if (s.length() == 2) {
+                        arg++;
+                        break;
+                    }
+                    s = s.substring(2);
+                    for (int i = 2; i < s.length(); i++)
+                        if (s.charAt(i) == '=') {
+                            v = s.substring(i+1);
+                            s = s.substring(0, i);
+                        }
+                    if (s.equals("format"))
+                        c = 'f';
+                    else if (s.equals("in") || s.equals("input"))
+                        c = 'i';
+                    else if (s.equals("out") || s.equals("output"))
+                        c = 'o';
+                    else
+                        c = '?';
+                }
+                else {
+                    c = s.charAt(1);
+                    if (s.length() > 2)
+                        v = s.substring(2);
+                    else if ( ( c=='f' || c=='i' || c=='o') && ( (arg+1) < args.length) )
+                        v = args[++arg];
+                }
+                switch (c) {
+                case 'f':
+                    format = v;
+                    break;
+                case 'i':
+                    input = v;
+                    break;
+                case 'o':
+                    output = v;
+                    break;
+                default:
+                    help();
+                    break;
+                }
+            }
+            if (input != null || arg >= args.length) {
+                if (input == null || input.equals("-")) {
+                    InputStreamReader reader0 = new InputStreamReader(System.in);
+                    reader = new BufferedReader(reader0);
+                }
+                else {
+                    Reader reader0 = new FileReader(input);
+                    reader = new BufferedReader(reader0);
+                }
+            }
+            if (output.equals("-")) {
+                OutputStreamWriter writer0 = new OutputStreamWriter(System.out);
+                BufferedWriter writer1 = new BufferedWriter(writer0);
+                writer = new PrintWriter(writer1);
+            }
+            else {
+                Writer writer0 = new FileWriter(output);
+                BufferedWriter writer1 = new BufferedWriter(writer0);
+                writer = new PrintWriter(writer1);
+            }
+            for (;;) {
+                if (reader != null) {
+                    puzzle = reader.readLine();
+                    if (puzzle == null)
+                        break;
+                }
+                else if (arg < args.length)
+                    puzzle = args[arg++];
+                else
+                    break;
+                if (puzzle.length() < 81)
+                    continue;
+                ordinal++;
+                String m = Canonicalizer.getCanonicalForm(puzzle);
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < format.length(); i++) {
+                    char f = format.charAt(i);
+                    if (f != '%' || ++i >= format.length())
+                        line.append(f);
+                    else
+                        switch (format.charAt(i)) {
+                        case 'g':
+                            line.append(puzzle.substring(0, 81));
+                            break;
+                        case 'm':
+                            line.append(m);
+                            break;
+                        case 'n':
+                            line.append(ordinal);
+                            break;
+                        default:
+                            line.append(format.charAt(i));
+                            break;
+                        }
+                }
+                writer.println(line);
+            }
+            writer.flush();
+        } catch(FileNotFoundException ex) {
+            ex.printStackTrace();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            try {
+                if (reader != null)
+                    reader.close();
+                if (writer != null)
+                    writer.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class serate {
         System.err.println("  serate - Sudoku Explainer command line rating");
         System.err.println("");
         System.err.println("SYNOPSIS");
-        System.err.println("  serate [ --diamond ] [ --format=FORMAT ] [ --input=FILE ] [ --output=FILE ] [ --pearl ] [ puzzle ... ]");
+        System.err.println("  serate [ --cache=FILE ] [ --canonical ] [ --diamond ] [ --format=FORMAT ] [ --input=FILE ] [ --max-level=N ] [ --max-rating=X ] [ --min-rating=X ] [ --output=FILE ] [ --pearl ] [ --steps=N ] [ --threads=N ] [ --timeout=SECONDS ] [ puzzle ... ]");
         System.err.println("");
         System.err.println("DESCRIPTION");
         System.err.println("  serate is a Sudoku Explainer command line entry point that rates one or more");
@@ -47,8 +47,15 @@ public class serate {
         System.err.println("  but otherwise unsolvable input puzzle.");
         System.err.println("");
         System.err.println("OPTIONS");
-//      System.err.println("  -d, --diamond");
-//      System.err.println("      Terminate rating if the puzzle is not a diamond.");
+        System.err.println("  -c, --cache=FILE");
+        System.err.println("      Keep the ratings in FILE, and do not rate again the puzzles found in it.");
+        System.err.println("      The ratings made by another version of Sudoku Explainer, with other");
+        System.err.println("      solving techniques, another variant or other rating modes are not used.");
+        System.err.println("      The ratings stopped by --max-level, --steps or --timeout are not kept.");
+        System.err.println("      %e gives the time of the original rating.");
+        System.err.println("  --diamond");
+        System.err.println("      Terminate rating if the puzzle is not a diamond.  The rating is then 20.0");
+        System.err.println("      and the status not_diamond or not_pearl.");
         System.err.println("  -f, --format=FORMAT");
         System.err.println("      Format the output for each input puzzle according to FORMAT.  Format");
         System.err.println("      conversion are %CHARACTER; all other characters are output unchanged.");
@@ -62,6 +69,12 @@ public class serate {
         System.err.println("            to the first cell placement.");
         System.err.println("        %r  The puzzle rating.  This is the highest ER of the methods leading");
         System.err.println("            to the puzzle solution.");
+        System.err.println("        %s  The rating status: ok if the puzzle was rated completely, else the");
+        System.err.println("            budget limit that stopped the rating: time, steps or level, or the");
+        System.err.println("            rating mode that stopped it: not_pearl, not_diamond, above_max or");
+        System.err.println("            min_reached.  The ratings of a stopped puzzle are the ones reached");
+        System.err.println("            so far.  If FORMAT has no %s, the status of a stopped puzzle is");
+        System.err.println("            appended to its line.");
         System.err.println("        %%  The % character.");
         System.err.println("  -h, --html");
         System.err.println("      List detailed info in html.");
@@ -69,12 +82,35 @@ public class serate {
         System.err.println("      Read 81-character puzzle strings, one per line, from FILE.  By default");
         System.err.println("      operands are treated as 81-character puzzle strings.  If no operands are");
         System.err.println("      specified then the standard input is read.");
+        System.err.println("  -j, --threads=N");
+        System.err.println("      Evaluate the solving techniques of a same level concurrently, on N");
+        System.err.println("      threads.  0 uses all the available processors.  The ratings and the");
+        System.err.println("      steps counted for --steps are the same as with the default of 1 thread;");
+        System.err.println("      only the puzzles stopped by --timeout may differ.");
+        System.err.println("  -k, --canonical");
+        System.err.println("      With --cache, share the ratings of the equivalent puzzles, keyed by their");
+        System.err.println("      canonical form.  Only used for the vanilla sudokus.");
+        System.err.println("  -l, --max-level=N");
+        System.err.println("      Stop rating a puzzle that needs forcing chains nested deeper than N:");
+        System.err.println("      0 excludes the Dynamic Forcing Chains (+), 1 to 5 allow the Nested");
+        System.err.println("      Forcing Chains up to that level.  By default all the levels are allowed.");
         System.err.println("  -m, --man");
         System.err.println("      List detailed info in displayed man page form.");
+        System.err.println("  -n, --min-rating=X");
+        System.err.println("      Terminate rating as soon as the rating reaches X, with the status");
+        System.err.println("      min_reached.  The puzzles with the status ok are rated below X.");
         System.err.println("  -o, --output=FILE");
         System.err.println("      Write output to FILE instead of the standard output.");
-//      System.err.println("  -p, --pearl");
-//      System.err.println("      Terminate rating if the puzzle is not a pearl.");
+        System.err.println("  -p, --pearl");
+        System.err.println("      Terminate rating if the puzzle is not a pearl.  The rating is then 20.0");
+        System.err.println("      and the status not_pearl.");
+        System.err.println("  -s, --steps=N");
+        System.err.println("      Stop rating a puzzle after N chaining steps.  By default there is no limit.");
+        System.err.println("  -t, --timeout=SECONDS");
+        System.err.println("      Stop rating a puzzle after SECONDS seconds.  By default there is no limit.");
+        System.err.println("  -x, --max-rating=X");
+        System.err.println("      Terminate rating as soon as the rating is above X, with the status");
+        System.err.println("      above_max.");
         System.err.println("  -V, --version");
         System.err.println("      Print the Sudoku Explainer (serate) version and exit.");
         System.err.println("");
@@ -98,7 +134,7 @@ public class serate {
     }
     static void usage(String option, int argument) {
         System.err.println("serate: " + option + ((argument == 1) ? ": option argument expected" : ": unknown option"));
-        System.err.println("Usage: serate [ --diamond ] [ --format=FORMAT ] [ --input=FILE ] [ --output=FILE ] [ --pearl ]");
+        System.err.println("Usage: serate [ --cache=FILE ] [ --canonical ] [ --diamond ] [ --format=FORMAT ] [ --input=FILE ] [ --max-level=N ] [ --max-rating=X ] [ --min-rating=X ] [ --output=FILE ] [ --pearl ] [ --steps=N ] [ --threads=N ] [ --timeout=SECONDS ]");
         System.exit(2);
     }
     /**
@@ -108,6 +144,9 @@ public class serate {
     public static void main(String[] args) {
         String          format = FORMAT;
         String          input = null;
+        String          cacheFile = null;
+        boolean         isCanonical = false;
+        RatingCache     cache = null;
         String          output = "-";
         String          a;
         String          s;
@@ -116,6 +155,12 @@ public class serate {
         BufferedReader  reader = null;
         PrintWriter     writer = null;
         int             ordinal = 0;
+        int             threads = 1;
+        long            timeout = 0;
+        long            steps = 0;
+        int             maxLevel = -1;
+        double          maxRating = 0.0;
+        double          minRating = 0.0;
         char            want = 0;
         int             arg;
         long            t;
@@ -138,21 +183,36 @@ public class serate {
                             v = s.substring(i+1);
                             s = s.substring(0, i);
                         }
-//                  if (s.equals("diamond"))
-//                      c = 'd';
-//                  else
-                    if (s.equals("format"))
+                    if (s.equals("cache"))
+                        c = 'c';
+                    else if (s.equals("canonical"))
+                        c = 'k';
+                    else if (s.equals("diamond"))
+                        c = 'y';    // -d is the diagonal variant
+                    else if (s.equals("format"))
                         c = 'f';
                     else if (s.equals("html"))
                         c = 'h';
                     else if (s.equals("in") || s.equals("input"))
                         c = 'i';
+                    else if (s.equals("max-level"))
+                        c = 'l';
+                    else if (s.equals("max-rating"))
+                        c = 'x';
+                    else if (s.equals("min-rating"))
+                        c = 'n';
                     else if (s.equals("man"))
                         c = 'm';
+                    else if (s.equals("steps"))
+                        c = 's';
+                    else if (s.equals("threads"))
+                        c = 'j';
+                    else if (s.equals("timeout"))
+                        c = 't';
                     else if (s.equals("out") || s.equals("output"))
                         c = 'o';
-//                  else if (s.equals("pearl"))
-//                      c = 'p';
+                    else if (s.equals("pearl"))
+                        c = 'p';
                     else if (s.equals("version"))
                         c = 'V';
                     else
@@ -162,22 +222,34 @@ public class serate {
                     c = s.charAt(1);
                     if (s.length() > 2)
                         v = s.substring(2);
-                    else if ( ( c=='f' || c=='i' || c=='o') && ( (arg+1) < args.length) )
+                    else if ( ( c=='c' || c=='f' || c=='i' || c=='j' || c=='l' || c=='n' || c=='o' || c=='s' || c=='t' || c=='x') && ( (arg+1) < args.length) )
                         v = args[++arg];
                 }
                 switch (c) {
+                case 'c':
                 case 'f':
                 case 'i':
+                case 'j':
+                case 'l':
+                case 'n':
                 case 'o':
+                case 's':
+                case 't':
+                case 'x':
                     if (v == null)
                         usage(a, 1);
                     break;
                 }
                 switch (c) {
-//              case 'd':
-//              case 'p':
-//                  want = c;
-//                  break;
+                case 'y':
+                    want = 'd';
+                    break;
+                case 'p':
+                    want = 'p';
+                    break;
+                case 'c':
+                    cacheFile = v;
+                    break;
                 case 'f':
                     format = v;
                     break;
@@ -187,12 +259,33 @@ public class serate {
                 case 'i':
                     input = v;
                     break;
+                case 'j':
+                    threads = Integer.parseInt(v);
+                    break;
+                case 'k':
+                    isCanonical = true;
+                    break;
+                case 'l':
+                    maxLevel = Integer.parseInt(v);
+                    break;
                 case 'm':
                     help(0);
                     break;
+                case 'n':
+                    minRating = Double.parseDouble(v);
+                    break;
                 case 'o':
                     output = v;
                     break;
+                case 's':
+                    steps = Long.parseLong(v);
+                    break;
+                case 't':
+                    timeout = (long)(Double.parseDouble(v) * 1000);
+                    break;
+                case 'x':
+                    maxRating = Double.parseDouble(v);
+                    break;
                 case 'V': case 'v':
                     System.out.println(THISVERSION);
                     System.exit(0);
@@ -258,6 +351,17 @@ public class serate {
                 BufferedWriter writer1 = new BufferedWriter(writer0);
                 writer = new PrintWriter(writer1);
             }
+            SolverContext context = new SolverContext();
+            Solver solver = context.getSolver();
+            solver.want = want;
+            solver.maxDifficulty = maxRating;
+            solver.minDifficulty = minRating;
+            solver.setThreads(threads);
+            if (timeout > 0 || steps > 0 || maxLevel >= 0)
+                solver.setBudget(new Budget(timeout, steps, maxLevel));
+            if (cacheFile != null)
+                cache = new RatingCache(new File(cacheFile),
+                        ("serate " + solver.getRatingMode()).trim(), isCanonical);
             for (;;) {
                 if (reader != null) {
                     puzzle = reader.readLine();
@@ -269,29 +373,25 @@ public class serate {
                 else
                     break;
                 if (puzzle.length() >= 81) {
-                    Grid grid = new Grid();
-                    for (int i = 0; i < 81; i++) {
-                        char ch = puzzle.charAt(i);
-                        if (ch >= '1' && ch <= '9') {
-                            int value = (ch - '0');
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                        if (ch >= 'A' && ch <= 'I') {
-                            int value = (ch - 'A'+1);
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                    }
-                    t = System.currentTimeMillis();
-                    Solver solver = new Solver(grid);
-                    solver.want = want;
-                    solver.rebuildPotentialValues();
                     ordinal++;
-                    try {
-                        solver.getDifficulty();
-                    } catch (UnsupportedOperationException ex) {
-                        solver.difficulty = solver.pearl = solver.diamond = 0.0;
+                    RatingCache.Rating rating = (cache != null ? cache.get(puzzle) : null);
+                    if (rating != null) {
+                        rating.applyTo(solver);
+                        t = rating.elapsed;
                     }
-                    t = System.currentTimeMillis() - t;
+                    else {
+                        t = System.currentTimeMillis();
+                        context.rate(puzzle);
+                        t = System.currentTimeMillis() - t;
+                        if (cache != null)
+                            cache.put(puzzle, solver, t);
+                    }
+                    String status = null;
+                    if (solver.exceeded != null)
+                        status = solver.exceeded.name().toLowerCase();
+                    else if (solver.stopped != null)
+                        status = solver.stopped.name().toLowerCase();
+                    boolean hasStatus = false;
                     s = "";
                     for (int i = 0; i < format.length(); i++) {
                         int             w;
@@ -326,6 +426,10 @@ public class serate {
                             case 'n':
                                 s += ordinal;
                                 break;
+                            case 's':
+                                s += (status != null ? status : "ok");
+                                hasStatus = true;
+                                break;
                             case 'e':
                                 t /= 10;
                                 u = t % 100;
@@ -363,6 +467,9 @@ public class serate {
                                 break;
                             }
                     }
+                    // A stopped rating is always marked, not to be taken for a complete one
+                    if (status != null && !hasStatus)
+                        s += " " + status;
                     writer.println(s);
                     writer.flush();
                 }
@@ -377,6 +484,8 @@ public class serate {
                     reader.close();
                 if (writer != null)
                     writer.close();
+                if (cache != null)
+                    cache.close();
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -8,6 +8,7 @@ package diuf.sudoku.test;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import diuf.sudoku.*;
 import static diuf.sudoku.Settings.*;
@@ -15,6 +16,10 @@ import diuf.sudoku.solver.*;
 
 public class validate {
     static String FORMAT = "%g ED=%r/%p/%d";
+    static void usage(String option) {
+        System.err.println("validate: " + option + ": option argument expected");
+        System.exit(2);
+    }
     /**
      * Solve input puzzles and print results according to the output format.
      * @param args 81-char puzzles
@@ -30,7 +35,10 @@ public class validate {
         BufferedReader  reader = null;
         PrintWriter     writer = null;
         int             arg;
+        int             threads = 1;
         char            c;
+        Worker          worker = null;
+        Pool            pool = null;
         Settings.getInstance().setNoSaves();
         try {
             for (arg = 0; arg < args.length; arg++) {
@@ -51,6 +59,8 @@ public class validate {
                         }
                     if (s.equals("in") || s.equals("input"))
                         c = 'i';
+                    else if (s.equals("threads"))
+                        c = 'j';
                     else if (s.equals("out") || s.equals("output"))
                         c = 'o';
                     else
@@ -60,13 +70,27 @@ public class validate {
                     c = s.charAt(1);
                     if (s.length() > 2)
                         v = s.substring(2);
-                    else if ( ( c=='f' || c=='i' || c=='o') && ( (arg+1) < args.length) )
+                    else if ( ( c=='f' || c=='i' || c=='j' || c=='o') && ( (arg+1) < args.length) )
                         v = args[++arg];
                 }
                 switch (c) {
+                case 'f':
+                case 'i':
+                case 'j':
+                case 'o':
+                    if (v == null)
+                        usage(a);
+                    break;
+                }
+                switch (c) {
                 case 'i':
                     input = v;
                     break;
+                case 'j':
+                    threads = Integer.parseInt(v);
+                    if (threads <= 0)
+                        threads = Runtime.getRuntime().availableProcessors();
+                    break;
                 case 'o':
                     output = v;
                     break;
@@ -130,6 +154,10 @@ public class validate {
                 BufferedWriter writer1 = new BufferedWriter(writer0);
                 writer = new PrintWriter(writer1);
             }
+            if (threads > 1)
+                pool = new Pool(format, threads, writer);
+            else
+                worker = new Worker(format);
             for (;;) {
                 if (reader != null) {
                     puzzle = reader.readLine();
@@ -141,79 +169,29 @@ public class validate {
                 else
                     break;
                 if (puzzle.length() >= 81) {
-                    Grid grid = new Grid();
-                    for (int i = 0; i < 81; i++) {
-                        char ch = puzzle.charAt(i);
-                        if (ch >= '1' && ch <= '9') {
-                            int value = (ch - '0');
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
-                        if (ch >= 'A' && ch <= 'I') {
-                            int value = (ch - 'A'+1);
-                            grid.setCellValue(i % 9, i / 9, value);
-                        }
+                    if (pool != null)
+                        pool.submit(puzzle);
+                    else {
+                        writer.println(worker.process(puzzle));
+                        writer.flush();
                     }
-
-                    Solver solver = new Solver(grid);
-                    solver.want = 0;
-                    solver.rebuildPotentialValues();
-                  Hint hint = solver.checkValidity();
-                  if ( hint != null ) {
-                    s = puzzle +" "+ hint.toString();
-                    writer.println(s);
-                    writer.flush();
-                  }
-                  if ( hint == null ) {
-                    try {
-                        solver.getDifficulty();
-                    } catch (UnsupportedOperationException ex) {
-                        solver.difficulty = solver.pearl = solver.diamond = 0.0;
-                    }
-                    s = "";
-                    for (int i = 0; i < format.length(); i++) {
-                        int             w;
-                        int             p;
-                        char    f = format.charAt(i);
-                        if (f != '%' || ++i >= format.length())
-                            s += f;
-                        else
-                            switch (format.charAt(i)) {
-                            case 'g':
-                                s += puzzle;
-                                break;
-                            case 'r':
-                                w = (int)((solver.difficulty + 0.05) * 10);
-                                p = w % 10;
-                                w /= 10;
-                                s += w + "." + p;
-                                break;
-                            case 'p':
-                                w = (int)((solver.pearl + 0.05) * 10);
-                                p = w % 10;
-                                w /= 10;
-                                s += w + "." + p;
-                                break;
-                            case 'd':
-                                w = (int)((solver.diamond + 0.05) * 10);
-                                p = w % 10;
-                                w /= 10;
-                                s += w + "." + p;
-                                break;
-                            default:
-                                s += f;
-                                break;
-                            }
-                    }
-                    writer.println(s);
-                    writer.flush();
-                  }
                 }
             }
         } catch(FileNotFoundException ex) {
             ex.printStackTrace();
+        } catch (InterruptedException ex) {
+            ex.printStackTrace();
         } catch (IOException ex) {
             ex.printStackTrace();
         } finally {
+            try {
+                // Also after an error, so that the lines of the submitted
+                // puzzles are written and the threads stop
+                if (pool != null)
+                    pool.finish();
+            } catch (InterruptedException ex) {
+                ex.printStackTrace();
+            }
             try {
                 if (reader != null)
                     reader.close();
@@ -224,4 +202,184 @@ public class validate {
             }
         }
     }
+
+    /**
+     * Validates and rates puzzles, with its own {@link SolverContext}.
+     * <p>
+     * The context is created by the thread that creates the worker, because
+     * creating a grid may update the settings.
+     */
+    static class Worker {
+
+        private final String format;
+        private final SolverContext context = new SolverContext();
+        private final Solver solver = context.getSolver();
+
+        Worker(String format) {
+            this.format = format;
+        }
+
+        /**
+         * Validate and rate a puzzle.
+         * @param puzzle the 81-char puzzle
+         * @return the output line
+         */
+        String process(String puzzle) {
+            String s;
+            context.reset(puzzle);
+            Hint hint = solver.checkValidity();
+            if ( hint != null ) {
+                return puzzle +" "+ hint.toString() +" ("+ hint.getRule() +")";
+            }
+            try {
+                solver.getDifficulty();
+            } catch (UnsupportedOperationException ex) {
+                solver.difficulty = solver.pearl = solver.diamond = 0.0;
+            }
+            s = "";
+            for (int i = 0; i < format.length(); i++) {
+                int             w;
+                int             p;
+                char    f = format.charAt(i);
+                if (f != '%' || ++i >= format.length())
+                    s += f;
+                else
+                    switch (format.charAt(i)) {
+                    case 'g':
+                        s += puzzle;
+                        break;
+                    case 'r':
+                        w = (int)((solver.difficulty + 0.05) * 10);
+                        p = w % 10;
+                        w /= 10;
+                        s += w + "." + p;
+                        break;
+                    case 'p':
+                        w = (int)((solver.pearl + 0.05) * 10);
+                        p = w % 10;
+                        w /= 10;
+                        s += w + "." + p;
+                        break;
+                    case 'd':
+                        w = (int)((solver.diamond + 0.05) * 10);
+                        p = w % 10;
+                        w /= 10;
+                        s += w + "." + p;
+                        break;
+                    default:
+                        s += f;
+                        break;
+                    }
+            }
+            return s;
+        }
+
+    }
+
+    /**
+     * Worker threads, each with its own {@link Worker}, taking the puzzles
+     * from a bounded queue.
+     * <p>
+     * The output lines are written in the order of the input puzzles: lines
+     * that are ready before the previous ones wait in a reorder buffer. A
+     * window of puzzles, submitted but not written yet, bounds both the
+     * queue and the reorder buffer, so that the memory used does not
+     * depend on the size of the input.
+     */
+    static class Pool {
+
+        private static class Job {
+            final long ordinal;
+            final String puzzle;
+            Job(long ordinal, String puzzle) {
+                this.ordinal = ordinal;
+                this.puzzle = puzzle;
+            }
+        }
+
+        private final PrintWriter writer;
+        private final BlockingQueue<Job> queue;
+        private final Semaphore window;
+        private final Map<Long, String> pending = new HashMap<Long, String>();
+        private final Thread[] threads;
+        private long submitted = 0;
+        private long written = 0;
+
+        Pool(String format, int count, PrintWriter writer) {
+            this.writer = writer;
+            this.queue = new ArrayBlockingQueue<Job>(count * 4);
+            this.window = new Semaphore(count * 64);
+            this.threads = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                final Worker worker = new Worker(format);
+                threads[i] = new Thread("validate-" + (i + 1)) {
+                    @Override
+                    public void run() {
+                        work(worker);
+                    }
+                };
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+        }
+
+        /**
+         * Submit a puzzle, waiting if the window is full.
+         */
+        void submit(String puzzle) throws InterruptedException {
+            window.acquire();
+            queue.put(new Job(submitted++, puzzle));
+        }
+
+        /**
+         * Wait for all the submitted puzzles to be written, and stop the
+         * threads.
+         */
+        void finish() throws InterruptedException {
+            for (int i = 0; i < threads.length; i++)
+                queue.put(new Job(-1, null)); // End of input
+            for (Thread thread : threads)
+                thread.join();
+            writer.flush();
+        }
+
+        private void work(Worker worker) {
+            try {
+                for (;;) {
+                    Job job = queue.take();
+                    String puzzle = job.puzzle;
+                    if (puzzle == null)
+                        break;
+                    String line = null;
+                    try {
+                        line = worker.process(puzzle);
+                    } catch (Throwable ex) {
+                        // Errors too (stack overflow in the chains...): every
+                        // ordinal must be written, or the output would stall
+                        ex.printStackTrace();
+                        line = puzzle + " " + ex.toString();
+                    }
+                    write(job.ordinal, line);
+                }
+            } catch (InterruptedException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        /**
+         * Write the line of a puzzle, and the following lines that are
+         * ready, or keep it until the previous lines have been written.
+         */
+        private synchronized void write(long ordinal, String line) {
+            pending.put(ordinal, line);
+            String next;
+            while ((next = pending.remove(written)) != null) {
+                writer.println(next);
+                written++;
+                window.release();
+            }
+            writer.flush();
+        }
+
+    }
 }
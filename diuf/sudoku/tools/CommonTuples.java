@@ -37,6 +37,24 @@ public class CommonTuples {
         return null;
     }
 
+    /**
+     * Same as before, but on bit masks instead of bitsets.
+     * @param candidates the array of bit masks
+     * @param degree the degree
+     * @return the union of all bit masks, or <code>0</code>
+     */
+    public static int searchCommonTuple(int[] candidates, int degree) {
+        int result = 0;
+        for (int candidate : candidates) {
+            if (Integer.bitCount(candidate) <= 1)
+                return 0;
+            result |= candidate;
+        }
+        if (Integer.bitCount(result) == degree)
+            return result;
+        return 0;
+    }
+
     /**
      * Same as before, but all bitsets must only have non-zero
      * cardinality instead of grater than one.